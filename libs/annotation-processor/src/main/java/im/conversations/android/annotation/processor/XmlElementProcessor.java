@@ -82,6 +82,8 @@ public class XmlElementProcessor extends AbstractProcessor {
             }
             out.println("EXTENSION_CLASS_MAP = builder.build();");
             out.println("}");
+            out.print("\n");
+            writeFactoryMethod(out, maps);
             out.println(" private Extensions() {}");
             out.println("}");
             // writing generated file to out …
@@ -91,6 +93,39 @@ public class XmlElementProcessor extends AbstractProcessor {
         return true;
     }
 
+    /**
+     * Writes a factory method that switches over namespace and name and invokes the default
+     * constructor directly. This spares the parser the reflective constructor lookup and the
+     * allocation of an {@link Id} for every element it reads.
+     */
+    private static void writeFactoryMethod(
+            final PrintWriter out, final ImmutableMap<Id, String> maps) {
+        out.println("public static Extension create(final String name, final String namespace) {");
+        out.println("if (name == null || namespace == null) {");
+        out.println("return null;");
+        out.println("}");
+        out.println("switch (namespace) {");
+        String currentNamespace = null;
+        for (final Map.Entry<Id, String> entry : maps.entrySet()) {
+            final Id id = entry.getKey();
+            if (!id.namespace.equals(currentNamespace)) {
+                if (currentNamespace != null) {
+                    out.println("default: return null;");
+                    out.println("}");
+                }
+                currentNamespace = id.namespace;
+                out.format("case \"%s\":\n", id.namespace);
+                out.println("switch (name) {");
+            }
+            out.format("case \"%s\": return new %s();\n", id.name, entry.getValue());
+        }
+        out.println("default: return null;");
+        out.println("}");
+        out.println("default: return null;");
+        out.println("}");
+        out.println("}");
+    }
+
     private static Id of(final TypeElement typeElement) {
         final XmlElement xmlElement = typeElement.getAnnotation(XmlElement.class);
         final PackageElement packageElement = getPackageElement(typeElement);
@@ -8,9 +8,11 @@ import android.os.Build;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.collection.LruCache;
+import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -173,6 +175,19 @@ public class AndroidDNSClient extends AbstractDnsClient {
         this.askForDnssec = askForDnssec;
     }
 
+    /**
+     * Identifies the network we are currently resolving on by the set of DNS servers it provides.
+     * Used to keep resolver results of different networks (split horizon DNS, captive portals)
+     * apart.
+     */
+    public String getNetworkFingerprint() {
+        final var dnsServers = getDNSServers();
+        if (dnsServers.isEmpty()) {
+            return "";
+        }
+        return Joiner.on(',').join(Ordering.usingToString().sortedCopy(dnsServers));
+    }
+
     private List<DNSServer> getDNSServers() {
         final var c = this.context;
         if (c == null) {
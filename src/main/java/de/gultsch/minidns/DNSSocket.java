@@ -4,7 +4,6 @@ import android.util.Log;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
-import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import eu.siacs.conversations.Config;
@@ -19,9 +18,13 @@ import java.net.Socket;
 import java.net.SocketAddress;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocket;
@@ -33,8 +36,13 @@ final class DNSSocket implements Closeable {
 
     public static final int QUERY_TIMEOUT = 5_000;
 
-    private final Semaphore semaphore = new Semaphore(1);
+    // queries beyond this limit are queued until a response for an earlier query comes in
+    private static final int MAX_IN_FLIGHT_QUERIES = 16;
+
+    private static final ExecutorService READER_EXECUTOR = Executors.newCachedThreadPool();
+
     private final Map<Integer, SettableFuture<DnsMessage>> inFlightQueries = new HashMap<>();
+    private final Queue<PendingQuery> pendingQueries = new ArrayDeque<>();
     private final Socket socket;
     private final DataInputStream dataInputStream;
     private final DataOutputStream dataOutputStream;
@@ -46,7 +54,7 @@ final class DNSSocket implements Closeable {
         this.socket = socket;
         this.dataInputStream = dataInputStream;
         this.dataOutputStream = dataOutputStream;
-        new Thread(this::readDNSMessages).start();
+        READER_EXECUTOR.execute(this::readDNSMessages);
     }
 
     private void readDNSMessages() {
@@ -62,6 +70,7 @@ final class DNSSocket implements Closeable {
                 } else {
                     Log.e(Config.LOGTAG, "no in flight query found for response id " + response.id);
                 }
+                sendPendingQuery();
             }
             evictInFlightQueries(new EOFException());
         } catch (final IOException e) {
@@ -76,14 +85,16 @@ final class DNSSocket implements Closeable {
     }
 
     private void evictInFlightQueries(final Exception e) {
-        final ImmutableList<SettableFuture<DnsMessage>> futures;
+        final ImmutableList.Builder<SettableFuture<DnsMessage>> builder = ImmutableList.builder();
         synchronized (inFlightQueries) {
-            if (this.inFlightQueries.isEmpty()) {
-                return;
+            builder.addAll(this.inFlightQueries.values());
+            for (final PendingQuery pendingQuery : this.pendingQueries) {
+                builder.add(pendingQuery.future());
             }
-            futures = ImmutableList.copyOf(this.inFlightQueries.values());
             this.inFlightQueries.clear();
+            this.pendingQueries.clear();
         }
+        final var futures = builder.build();
         for (var future : futures) {
             future.setException(e);
         }
@@ -143,23 +154,59 @@ final class DNSSocket implements Closeable {
     }
 
     public ListenableFuture<DnsMessage> queryAsync(final DnsMessage query) {
-        try {
-            this.semaphore.acquire();
-        } catch (InterruptedException e) {
-            return Futures.immediateFailedFuture(e);
+        final SettableFuture<DnsMessage> responseFuture = SettableFuture.create();
+        final DnsMessage unique;
+        synchronized (this.inFlightQueries) {
+            if (this.inFlightQueries.size() >= MAX_IN_FLIGHT_QUERIES) {
+                this.pendingQueries.add(new PendingQuery(query, responseFuture));
+                return responseFuture;
+            }
+            unique = register(query, responseFuture);
+        }
+        send(unique, responseFuture);
+        return responseFuture;
+    }
+
+    private void sendPendingQuery() {
+        final PendingQuery pendingQuery;
+        final DnsMessage unique;
+        synchronized (this.inFlightQueries) {
+            if (this.inFlightQueries.size() >= MAX_IN_FLIGHT_QUERIES) {
+                return;
+            }
+            pendingQuery = this.pendingQueries.poll();
+            if (pendingQuery == null) {
+                return;
+            }
+            unique = register(pendingQuery.query(), pendingQuery.future());
         }
+        send(unique, pendingQuery.future());
+    }
+
+    /**
+     * Multiple queries are pipelined over the same connection; responses are matched to queries
+     * by their id. Hand out a different id if the one chosen by the caller is already in flight.
+     */
+    private DnsMessage register(final DnsMessage query, final SettableFuture<DnsMessage> future) {
+        DnsMessage unique = query;
+        while (this.inFlightQueries.containsKey(unique.id)) {
+            unique = query.asBuilder().setId(ThreadLocalRandom.current().nextInt(0x10000)).build();
+        }
+        this.inFlightQueries.put(unique.id, future);
+        return unique;
+    }
+
+    private void send(final DnsMessage query, final SettableFuture<DnsMessage> future) {
         try {
-            final SettableFuture<DnsMessage> responseFuture = SettableFuture.create();
-            synchronized (this.inFlightQueries) {
-                this.inFlightQueries.put(query.id, responseFuture);
+            synchronized (this.dataOutputStream) {
+                query.writeTo(this.dataOutputStream);
+                this.dataOutputStream.flush();
             }
-            query.writeTo(this.dataOutputStream);
-            this.dataOutputStream.flush();
-            return responseFuture;
         } catch (final IOException e) {
-            return Futures.immediateFailedFuture(e);
-        } finally {
-            this.semaphore.release();
+            synchronized (this.inFlightQueries) {
+                this.inFlightQueries.remove(query.id, future);
+            }
+            future.setException(e);
         }
     }
 
@@ -178,6 +225,8 @@ final class DNSSocket implements Closeable {
         this.socket.close();
     }
 
+    private record PendingQuery(DnsMessage query, SettableFuture<DnsMessage> future) {}
+
     public void closeQuietly() {
         try {
             this.socket.close();
@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -70,9 +71,33 @@ public class NetworkDataSource {
         return transportBuilder.build();
     }
 
+    // identical questions to the same server (for example from multiple accounts on the same
+    // domain connecting at once) share a single query on the wire
+    private static final Map<InFlightKey, ListenableFuture<StandardDnsQueryResult>>
+            IN_FLIGHT_QUERIES = new HashMap<>();
+
     public ListenableFuture<StandardDnsQueryResult> query(
             final DnsMessage message, final DNSServer dnsServer) {
-        return query(message, dnsServer, new LinkedList<>(dnsServer.transports));
+        final InFlightKey key = new InFlightKey(dnsServer, message.asNormalizedVersion());
+        final ListenableFuture<StandardDnsQueryResult> future;
+        synchronized (IN_FLIGHT_QUERIES) {
+            final var inFlight = IN_FLIGHT_QUERIES.get(key);
+            if (inFlight != null) {
+                Log.d(Config.LOGTAG, "coalescing query with in flight query to " + dnsServer);
+                return Futures.nonCancellationPropagating(inFlight);
+            }
+            future = query(message, dnsServer, new LinkedList<>(dnsServer.transports));
+            IN_FLIGHT_QUERIES.put(key, future);
+        }
+        future.addListener(
+                () -> {
+                    synchronized (IN_FLIGHT_QUERIES) {
+                        IN_FLIGHT_QUERIES.remove(key, future);
+                    }
+                },
+                MoreExecutors.directExecutor());
+        // one caller timing out must not cancel the query for everyone else
+        return Futures.nonCancellationPropagating(future);
     }
 
     private ListenableFuture<StandardDnsQueryResult> query(
@@ -201,4 +226,6 @@ public class NetworkDataSource {
     public int getUdpPayloadSize() {
         return udpPayloadSize;
     }
+
+    private record InFlightKey(DNSServer dnsServer, DnsMessage question) {}
 }
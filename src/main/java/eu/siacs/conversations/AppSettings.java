@@ -72,6 +72,10 @@ public class AppSettings {
     private static final String ACCEPT_INVITES_FROM_STRANGERS = "accept_invites_from_strangers";
     private static final String NOTIFICATIONS_FROM_STRANGERS = "notifications_from_strangers";
     private static final String INSTALLATION_ID = "im.conversations.android.install_id";
+    private static final String BACKUP_BASE_FILENAME = "backup_base_filename_";
+    private static final String BACKUP_BASE_TIMESTAMP = "backup_base_timestamp_";
+    private static final String BACKUP_BASE_MESSAGE = "backup_base_message_";
+    private static final String BACKUP_BASE_CHANGE = "backup_base_change_";
 
     private static final String EXTERNAL_STORAGE_AUTHORITY =
             "com.android.externalstorage.documents";
@@ -326,6 +330,36 @@ public class AppSettings {
                 .apply();
     }
 
+    /**
+     * @return the last full backup of the given account that incremental backups can be based on
+     *     or null if there is none
+     */
+    public BackupBase getBackupBase(final String account) {
+        final SharedPreferences sharedPreferences =
+                PreferenceManager.getDefaultSharedPreferences(context);
+        final String filename = sharedPreferences.getString(BACKUP_BASE_FILENAME + account, null);
+        if (Strings.isNullOrEmpty(filename)) {
+            return null;
+        }
+        return new BackupBase(
+                filename,
+                sharedPreferences.getLong(BACKUP_BASE_TIMESTAMP + account, 0),
+                sharedPreferences.getLong(BACKUP_BASE_MESSAGE + account, 0),
+                sharedPreferences.getLong(BACKUP_BASE_CHANGE + account, 0));
+    }
+
+    public void setBackupBase(final String account, final BackupBase backupBase) {
+        final SharedPreferences sharedPreferences =
+                PreferenceManager.getDefaultSharedPreferences(context);
+        sharedPreferences
+                .edit()
+                .putString(BACKUP_BASE_FILENAME + account, backupBase.filename())
+                .putLong(BACKUP_BASE_TIMESTAMP + account, backupBase.timestamp())
+                .putLong(BACKUP_BASE_MESSAGE + account, backupBase.message())
+                .putLong(BACKUP_BASE_CHANGE + account, backupBase.change())
+                .apply();
+    }
+
     public boolean isSendCrashReports() {
         return getBooleanPreference(SEND_CRASH_REPORTS, R.bool.send_crash_reports);
     }
@@ -384,4 +418,9 @@ public class AppSettings {
                 .putLong(INSTALLATION_ID, installationId)
                 .apply();
     }
+
+    /**
+     * @param message the highest rowid in the messages table when the backup was started
+     */
+    public record BackupBase(String filename, long timestamp, long message, long change) {}
 }
@@ -53,8 +53,10 @@ public final class Config {
     public static final int PING_TIMEOUT = 15;
     public static final int SOCKET_TIMEOUT = 15;
     public static final int CONNECT_TIMEOUT = 90;
+    public static final int CONNECTION_ATTEMPT_DELAY = 250; // in milliseconds
     public static final int POST_CONNECTIVITY_CHANGE_PING_INTERVAL = 30;
     public static final int CONNECT_DISCO_TIMEOUT = 20;
+    public static final int SM_CATCHUP_COALESCING_WINDOW = 10; // in milliseconds
 
     public static final int AVATAR_THUMBNAIL_SIZE = 192;
     public static final int AVATAR_THUMBNAIL_CHAR_LIMIT = 9400;
@@ -71,12 +73,16 @@ public final class Config {
     public static final int PAGE_SIZE = 50;
     public static final int MAX_NUM_PAGES = 3;
     public static final int MAX_SEARCH_RESULTS = 300;
+    // most recent hits that are ranked to pick the search results from
+    public static final int MAX_SEARCH_CANDIDATES = 3000;
 
     public static final int REFRESH_UI_INTERVAL = 500;
 
     public static final int MAX_DISPLAY_MESSAGE_CHARS = 4096;
     public static final int MAX_STORAGE_MESSAGE_CHARS = 2 * 1024 * 1024; // 2MB
 
+    public static final int FILE_TRANSFER_CHUNK_SIZE = 64 * 1024;
+
     public static final long MILLISECONDS_IN_DAY = 24 * 60 * 60 * 1000;
 
     // remove *other* omemo devices from *your* device list announcement after not seeing any
@@ -123,6 +129,9 @@ public final class Config {
     public static final long MAM_MAX_CATCHUP = MILLISECONDS_IN_DAY * 5;
     public static final int MAM_MAX_MESSAGES = 750;
 
+    // recurring backups in between two full backups only contain what changed since the full one
+    public static final long BACKUP_FULL_INTERVAL = MILLISECONDS_IN_DAY * 7;
+
     public static final Class<? extends ChatStateNotification> DEFAULT_CHAT_STATE = Active.class;
     public static final int TYPING_TIMEOUT = 8;
 
@@ -1,5 +1,6 @@
 package eu.siacs.conversations.crypto.sasl;
 
+import android.util.Log;
 import com.google.common.base.CaseFormat;
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
@@ -12,13 +13,18 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.hash.HashFunction;
 import com.google.common.io.BaseEncoding;
 import com.google.common.primitives.Ints;
+import eu.siacs.conversations.Config;
 import eu.siacs.conversations.entities.Account;
 import eu.siacs.conversations.utils.CryptoHelper;
 import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
 import javax.net.ssl.SSLSocket;
 
 public abstract class ScramMechanism extends SaslMechanism {
@@ -50,6 +56,7 @@ public abstract class ScramMechanism extends SaslMechanism {
     private final String clientNonce;
     private final String clientFirstMessageBare;
     private byte[] serverSignature = null;
+    private String scramKeys = null;
     private DowngradeProtection downgradeProtection = null;
 
     ScramMechanism(final Account account, final ChannelBinding channelBinding) {
@@ -87,18 +94,78 @@ public abstract class ScramMechanism extends SaslMechanism {
 
     protected abstract HashFunction getDigest();
 
+    /**
+     * @return the JCA name of the HMAC algorithm; the same for the PLUS and non-PLUS variant
+     */
+    protected abstract String getHMacAlgorithm();
+
     private KeyPair getKeyPair(final String password, final byte[] salt, final int iterations)
             throws ExecutionException {
-        final var key = new CacheKey(getMechanism(), password, salt, iterations);
-        return CACHE.get(key, () -> calculateKeyPair(password, salt, iterations));
+        final var key = new CacheKey(getHMacAlgorithm(), password, salt, iterations);
+        return CACHE.get(
+                key,
+                () -> {
+                    final var stored = getStoredKeyPair(salt, iterations);
+                    if (stored != null) {
+                        return stored;
+                    }
+                    return calculateKeyPair(password, salt, iterations);
+                });
+    }
+
+    /**
+     * The ClientKey and ServerKey are stored in the account after they have been verified by the
+     * server. They are only valid for the current password (the account discards them when the
+     * password changes) and the salt and iteration count the server sent.
+     */
+    private KeyPair getStoredKeyPair(final byte[] salt, final int iterations) {
+        final String stored = account.getScramKeys(getHMacAlgorithm());
+        if (stored == null) {
+            return null;
+        }
+        final var parts = Splitter.on(',').splitToList(stored);
+        if (parts.size() != 4) {
+            return null;
+        }
+        try {
+            if (!Objects.equal(Ints.tryParse(parts.get(0)), iterations)
+                    || !Arrays.equals(salt, BaseEncoding.base64().decode(parts.get(1)))) {
+                return null;
+            }
+            return new KeyPair(
+                    BaseEncoding.base64().decode(parts.get(2)),
+                    BaseEncoding.base64().decode(parts.get(3)));
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String serialize(final byte[] salt, final int iterations, final KeyPair keys) {
+        return Joiner.on(',')
+                .join(
+                        iterations,
+                        BaseEncoding.base64().encode(salt),
+                        BaseEncoding.base64().encode(keys.clientKey),
+                        BaseEncoding.base64().encode(keys.serverKey));
     }
 
     private KeyPair calculateKeyPair(final String password, final byte[] salt, final int iterations)
             throws InvalidKeyException {
+        final long start = System.nanoTime();
         final byte[] saltedPassword, serverKey, clientKey;
         saltedPassword = hi(password.getBytes(), salt, iterations);
         serverKey = hmac(saltedPassword, SERVER_KEY_BYTES);
         clientKey = hmac(saltedPassword, CLIENT_KEY_BYTES);
+        Log.d(
+                Config.LOGTAG,
+                account.getJid().asBareJid()
+                        + ": calculated "
+                        + getHMacAlgorithm()
+                        + " keys with "
+                        + iterations
+                        + " iterations in "
+                        + (System.nanoTime() - start) / 1_000_000
+                        + "ms");
         return new KeyPair(clientKey, serverKey);
     }
 
@@ -119,16 +186,33 @@ public abstract class ScramMechanism extends SaslMechanism {
      * Hi() is, essentially, PBKDF2 [RFC2898] with HMAC() as the
      * pseudorandom function (PRF) and with dkLen == output length of
      * HMAC() == output length of H().
+     *
+     * The MAC is keyed once and then reused for every iteration; each round writes its output
+     * back into the same buffer.
      */
     private byte[] hi(final byte[] key, final byte[] salt, final int iterations)
             throws InvalidKeyException {
-        byte[] u = hmac(key, CryptoHelper.concatenateByteArrays(salt, CryptoHelper.ONE));
-        byte[] out = u.clone();
-        for (int i = 1; i < iterations; i++) {
-            u = hmac(key, u);
-            for (int j = 0; j < u.length; j++) {
-                out[j] ^= u[j];
+        final Mac mac;
+        try {
+            mac = Mac.getInstance(getHMacAlgorithm());
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        mac.init(key.length == 0 ? EMPTY_KEY : new SecretKeySpec(key, getHMacAlgorithm()));
+        mac.update(salt);
+        mac.update(CryptoHelper.ONE);
+        final byte[] u = mac.doFinal();
+        final byte[] out = u.clone();
+        try {
+            for (int i = 1; i < iterations; i++) {
+                mac.update(u);
+                mac.doFinal(u, 0);
+                for (int j = 0; j < u.length; j++) {
+                    out[j] ^= u[j];
+                }
             }
+        } catch (final ShortBufferException e) {
+            throw new AssertionError(e);
         }
         return out;
     }
@@ -233,6 +317,7 @@ public abstract class ScramMechanism extends SaslMechanism {
         } catch (final ExecutionException e) {
             throw new AuthenticationException("Invalid keys generated");
         }
+        this.scramKeys = serialize(salt, iterationCount, keys);
         final byte[] clientSignature;
         try {
             serverSignature = hmac(keys.serverKey, authMessage.getBytes());
@@ -280,6 +365,11 @@ public abstract class ScramMechanism extends SaslMechanism {
                 String.format("v=%s", BaseEncoding.base64().encode(serverSignature));
         if (clientCalculatedServerFinalMessage.equals(serverFinalMessage)) {
             this.state = State.VALID_SERVER_RESPONSE;
+            // the server has proven knowledge of the keys; persisted along with the account
+            final var algorithm = getHMacAlgorithm();
+            if (!this.scramKeys.equals(account.getScramKeys(algorithm))) {
+                account.setScramKeys(algorithm, this.scramKeys);
+            }
             return new byte[0];
         }
         throw new AuthenticationException(
@@ -25,6 +25,11 @@ public class ScramSha1 extends ScramMechanism {
         return Hashing.sha1();
     }
 
+    @Override
+    protected String getHMacAlgorithm() {
+        return "HmacSHA1";
+    }
+
     @Override
     public int getPriority() {
         return 20;
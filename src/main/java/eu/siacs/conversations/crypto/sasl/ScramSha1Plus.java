@@ -25,6 +25,11 @@ public class ScramSha1Plus extends ScramPlusMechanism {
         return Hashing.sha1();
     }
 
+    @Override
+    protected String getHMacAlgorithm() {
+        return "HmacSHA1";
+    }
+
     @Override
     public int getPriority() {
         return 35 + ChannelBinding.priority(this.channelBinding); // higher than SCRAM-SHA512 (30)
@@ -28,6 +28,12 @@ public class ScramSha256 extends ScramMechanism {
     protected HashFunction getDigest() {
         return Hashing.sha256();
     }
+
+    @Override
+    protected String getHMacAlgorithm() {
+        return "HmacSHA256";
+    }
+
     @Override
     public int getPriority() {
         return 25;
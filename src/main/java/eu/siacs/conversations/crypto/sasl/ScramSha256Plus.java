@@ -25,6 +25,11 @@ public class ScramSha256Plus extends ScramPlusMechanism {
         return Hashing.sha256();
     }
 
+    @Override
+    protected String getHMacAlgorithm() {
+        return "HmacSHA256";
+    }
+
     @Override
     public int getPriority() {
         return 40 + ChannelBinding.priority(this.channelBinding);
@@ -29,6 +29,11 @@ public class ScramSha512 extends ScramMechanism {
         return Hashing.sha512();
     }
 
+    @Override
+    protected String getHMacAlgorithm() {
+        return "HmacSHA512";
+    }
+
     @Override
     public int getPriority() {
         return 30;
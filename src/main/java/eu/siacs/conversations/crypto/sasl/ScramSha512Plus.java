@@ -25,6 +25,11 @@ public class ScramSha512Plus extends ScramPlusMechanism {
         return Hashing.sha512();
     }
 
+    @Override
+    protected String getHMacAlgorithm() {
+        return "HmacSHA512";
+    }
+
     @Override
     public int getPriority() {
         return 45 + ChannelBinding.priority(this.channelBinding);
@@ -4,6 +4,7 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.util.Log;
 import androidx.annotation.NonNull;
+import com.google.common.base.Objects;
 import com.google.common.base.Strings;
 import eu.siacs.conversations.Config;
 import eu.siacs.conversations.R;
@@ -67,6 +68,7 @@ public class Account extends AbstractEntity implements AvatarService.Avatar {
     private static final String KEY_PGP_SIGNATURE = "pgp_signature";
     private static final String KEY_PGP_ID = "pgp_id";
     private static final String KEY_PINNED_MECHANISM = "pinned_mechanism";
+    private static final String KEY_SCRAM_KEYS = "scram_keys";
     public static final String KEY_SOS_URL = "sos_url";
     public static final String KEY_PRE_AUTH_REGISTRATION_TOKEN = "pre_auth_registration";
     protected final JSONObject keys;
@@ -294,6 +296,11 @@ public class Account extends AbstractEntity implements AvatarService.Avatar {
     }
 
     public void setPassword(final String password) {
+        if (!Objects.equal(this.password, password)) {
+            synchronized (this.keys) {
+                this.keys.remove(KEY_SCRAM_KEYS);
+            }
+        }
         this.password = password;
     }
 
@@ -495,6 +502,32 @@ public class Account extends AbstractEntity implements AvatarService.Avatar {
         }
     }
 
+    /**
+     * @return the SCRAM keys derived from the current password for the given HMAC algorithm or
+     *     null if none have been stored
+     */
+    public String getScramKeys(final String algorithm) {
+        synchronized (this.keys) {
+            final JSONObject scramKeys = this.keys.optJSONObject(KEY_SCRAM_KEYS);
+            return scramKeys == null ? null : scramKeys.optString(algorithm, null);
+        }
+    }
+
+    public void setScramKeys(final String algorithm, final String scramKeys) {
+        synchronized (this.keys) {
+            try {
+                JSONObject existing = this.keys.optJSONObject(KEY_SCRAM_KEYS);
+                if (existing == null) {
+                    existing = new JSONObject();
+                    this.keys.put(KEY_SCRAM_KEYS, existing);
+                }
+                existing.put(algorithm, scramKeys);
+            } catch (final JSONException e) {
+                Log.w(Config.LOGTAG, "could not store SCRAM keys", e);
+            }
+        }
+    }
+
     public void setPrivateKeyAlias(final String alias) {
         setKey("private_key_alias", alias);
     }
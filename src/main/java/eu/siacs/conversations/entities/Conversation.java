@@ -9,6 +9,7 @@ import com.google.common.base.Strings;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import eu.siacs.conversations.Config;
 import eu.siacs.conversations.crypto.OmemoSetting;
@@ -30,6 +31,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -64,7 +66,12 @@ public class Conversation extends AbstractEntity
     private static final String ATTRIBUTE_NEXT_ENCRYPTION = "next_encryption";
     private static final String ATTRIBUTE_CORRECTING_MESSAGE = "correcting_message";
     protected final ArrayList<Message> messages = new ArrayList<>();
+    private final MessageIndex messageIndex = new MessageIndex();
     public AtomicBoolean messagesLoaded = new AtomicBoolean(true);
+    // false while only the last message has been restored from the database
+    public final AtomicBoolean messagesHydrated = new AtomicBoolean(true);
+    // the anchor of the messages that have not been loaded (yet), taken from the summary
+    private volatile MamReference lastMessageTransmittedFromSummary = null;
     protected Account account = null;
     private String draftMessage;
     private final String name;
@@ -232,15 +239,14 @@ public class Conversation extends AbstractEntity
 
     public Message findUnsentMessageWithUuid(String uuid) {
         synchronized (this.messages) {
-            for (final Message message : this.messages) {
-                final int s = message.getStatus();
-                if ((s == Message.STATUS_UNSEND || s == Message.STATUS_WAITING)
-                        && message.getUuid().equals(uuid)) {
-                    return message;
-                }
-            }
+            return find(
+                    this.messageIndex.withUuid(uuid),
+                    message -> {
+                        final int s = message.getStatus();
+                        return (s == Message.STATUS_UNSEND || s == Message.STATUS_WAITING)
+                                && message.getUuid().equals(uuid);
+                    });
         }
-        return null;
     }
 
     public void findWaitingMessages(OnMessageFound onMessageFound) {
@@ -274,42 +280,37 @@ public class Conversation extends AbstractEntity
 
     public Message findMessageWithFileAndUuid(final String uuid) {
         synchronized (this.messages) {
-            for (final Message message : this.messages) {
-                final Transferable transferable = message.getTransferable();
-                final boolean unInitiatedButKnownSize =
-                        MessageUtils.unInitiatedButKnownSize(message);
-                if (message.getUuid().equals(uuid)
-                        && message.getEncryption() != Message.ENCRYPTION_PGP
-                        && (message.isFileOrImage()
-                                || message.treatAsDownloadable()
-                                || unInitiatedButKnownSize
-                                || (transferable != null
-                                        && transferable.getStatus()
-                                                != Transferable.STATUS_UPLOADING))) {
-                    return message;
-                }
-            }
+            return find(
+                    this.messageIndex.withUuid(uuid),
+                    message -> {
+                        final Transferable transferable = message.getTransferable();
+                        final boolean unInitiatedButKnownSize =
+                                MessageUtils.unInitiatedButKnownSize(message);
+                        return message.getUuid().equals(uuid)
+                                && message.getEncryption() != Message.ENCRYPTION_PGP
+                                && (message.isFileOrImage()
+                                        || message.treatAsDownloadable()
+                                        || unInitiatedButKnownSize
+                                        || (transferable != null
+                                                && transferable.getStatus()
+                                                        != Transferable.STATUS_UPLOADING));
+                    });
         }
-        return null;
     }
 
     public Message findMessageWithUuid(final String uuid) {
         synchronized (this.messages) {
-            for (final Message message : this.messages) {
-                if (message.getUuid().equals(uuid)) {
-                    return message;
-                }
-            }
+            return find(
+                    this.messageIndex.withUuid(uuid), message -> message.getUuid().equals(uuid));
         }
-        return null;
     }
 
     public boolean markAsDeleted(final List<String> uuids) {
         boolean deleted = false;
         final PgpDecryptionService pgpDecryptionService = account.getPgpDecryptionService();
         synchronized (this.messages) {
-            for (Message message : this.messages) {
-                if (uuids.contains(message.getUuid())) {
+            for (final String uuid : uuids) {
+                for (final Message message : this.messageIndex.withUuid(uuid)) {
                     message.setDeleted(true);
                     deleted = true;
                     if (message.getEncryption() == Message.ENCRYPTION_PGP
@@ -326,17 +327,16 @@ public class Conversation extends AbstractEntity
         boolean changed = false;
         final PgpDecryptionService pgpDecryptionService = account.getPgpDecryptionService();
         synchronized (this.messages) {
-            for (Message message : this.messages) {
-                for (final DatabaseBackend.FilePathInfo file : files)
-                    if (file.uuid.toString().equals(message.getUuid())) {
-                        message.setDeleted(file.deleted);
-                        changed = true;
-                        if (file.deleted
-                                && message.getEncryption() == Message.ENCRYPTION_PGP
-                                && pgpDecryptionService != null) {
-                            pgpDecryptionService.discard(message);
-                        }
+            for (final DatabaseBackend.FilePathInfo file : files) {
+                for (final Message message : this.messageIndex.withUuid(file.uuid.toString())) {
+                    message.setDeleted(file.deleted);
+                    changed = true;
+                    if (file.deleted
+                            && message.getEncryption() == Message.ENCRYPTION_PGP
+                            && pgpDecryptionService != null) {
+                        pgpDecryptionService.discard(message);
                     }
+                }
             }
         }
         return changed;
@@ -345,6 +345,7 @@ public class Conversation extends AbstractEntity
     public void clearMessages() {
         synchronized (this.messages) {
             this.messages.clear();
+            this.messageIndex.clear();
         }
     }
 
@@ -358,6 +359,7 @@ public class Conversation extends AbstractEntity
                 if (pgpDecryptionService != null) {
                     pgpDecryptionService.discard(discards);
                 }
+                this.messageIndex.removeAll(discards);
                 discards.clear();
                 untieMessages();
             }
@@ -381,31 +383,31 @@ public class Conversation extends AbstractEntity
 
     public Message findSentMessageWithUuidOrRemoteId(String id) {
         synchronized (this.messages) {
-            for (Message message : this.messages) {
-                if (id.equals(message.getUuid())
-                        || (message.getStatus() >= Message.STATUS_SEND
-                                && id.equals(message.getRemoteMsgId()))) {
-                    return message;
-                }
-            }
+            return find(
+                    this.messageIndex.withUuid(id),
+                    this.messageIndex.withRemoteMsgId(id),
+                    message ->
+                            id.equals(message.getUuid())
+                                    || (message.getStatus() >= Message.STATUS_SEND
+                                            && id.equals(message.getRemoteMsgId())));
         }
-        return null;
     }
 
     public Message findMessageWithUuidOrRemoteId(final String id) {
         synchronized (this.messages) {
-            for (final Message message : this.messages) {
-                if (id.equals(message.getUuid()) || id.equals(message.getRemoteMsgId())) {
-                    return message;
-                }
-            }
+            return find(
+                    this.messageIndex.withUuid(id),
+                    this.messageIndex.withRemoteMsgId(id),
+                    message -> id.equals(message.getUuid()) || id.equals(message.getRemoteMsgId()));
         }
-        return null;
     }
 
     public Message findMessageWithRemoteIdAndCounterpart(
             String id, Jid counterpart, boolean received, boolean carbon) {
         synchronized (this.messages) {
+            if (this.messageIndex.withRemoteMsgId(id).isEmpty()) {
+                return null;
+            }
             for (int i = this.messages.size() - 1; i >= 0; --i) {
                 final Message message = messages.get(i);
                 final Jid mcp = message.getCounterpart();
@@ -430,48 +432,85 @@ public class Conversation extends AbstractEntity
 
     public Message findSentMessageWithUuid(String id) {
         synchronized (this.messages) {
-            for (Message message : this.messages) {
-                if (id.equals(message.getUuid())) {
-                    return message;
-                }
-            }
+            return find(this.messageIndex.withUuid(id), message -> id.equals(message.getUuid()));
         }
-        return null;
     }
 
     public Message findMessageWithRemoteId(String id, Jid counterpart) {
         synchronized (this.messages) {
-            for (Message message : this.messages) {
-                if (counterpart.equals(message.getCounterpart())
-                        && (id.equals(message.getRemoteMsgId()) || id.equals(message.getUuid()))) {
-                    return message;
-                }
-            }
+            return find(
+                    this.messageIndex.withUuid(id),
+                    this.messageIndex.withRemoteMsgId(id),
+                    message ->
+                            counterpart.equals(message.getCounterpart())
+                                    && (id.equals(message.getRemoteMsgId())
+                                            || id.equals(message.getUuid())));
         }
-        return null;
     }
 
     public Message findReceivedWithRemoteId(final String id) {
         synchronized (this.messages) {
-            for (final Message message : this.messages) {
-                if (message.getStatus() == Message.STATUS_RECEIVED
-                        && id.equals(message.getRemoteMsgId())) {
-                    return message;
-                }
-            }
+            return find(
+                    this.messageIndex.withRemoteMsgId(id),
+                    message ->
+                            message.getStatus() == Message.STATUS_RECEIVED
+                                    && id.equals(message.getRemoteMsgId()));
         }
-        return null;
     }
 
     public Message findMessageWithServerMsgId(String id) {
+        if (id == null) {
+            return null;
+        }
         synchronized (this.messages) {
-            for (Message message : this.messages) {
-                if (id != null && id.equals(message.getServerMsgId())) {
-                    return message;
+            return find(
+                    this.messageIndex.withServerMsgId(id),
+                    message -> id.equals(message.getServerMsgId()));
+        }
+    }
+
+    /**
+     * Resolves a lookup through the candidates found in the {@link MessageIndex}. Only if more
+     * than one candidate matches do we fall back to scanning the message list to retain the
+     * 'first match in list order' semantics of the lookup. Must be called while holding the lock
+     * on {@link #messages}.
+     */
+    private Message find(final List<Message> candidates, final Predicate<Message> predicate) {
+        return find(candidates, Collections.emptyList(), predicate);
+    }
+
+    private Message find(
+            final List<Message> candidates,
+            final List<Message> moreCandidates,
+            final Predicate<Message> predicate) {
+        Message match = null;
+        for (final Message candidate : Iterables.concat(candidates, moreCandidates)) {
+            if (predicate.test(candidate)) {
+                if (match != null && match != candidate) {
+                    return Iterables.find(this.messages, predicate::test, null);
                 }
+                match = candidate;
             }
         }
-        return null;
+        return match;
+    }
+
+    void onUuidChanged(final Message message, final String previous) {
+        synchronized (this.messages) {
+            this.messageIndex.updateUuid(message, previous);
+        }
+    }
+
+    void onRemoteMsgIdChanged(final Message message, final String previous) {
+        synchronized (this.messages) {
+            this.messageIndex.updateRemoteMsgId(message, previous);
+        }
+    }
+
+    void onServerMsgIdChanged(final Message message, final String previous) {
+        synchronized (this.messages) {
+            this.messageIndex.updateServerMsgId(message, previous);
+        }
     }
 
     public boolean hasMessageWithCounterpart(Jid counterpart) {
@@ -564,12 +603,16 @@ public class Conversation extends AbstractEntity
 
     @Override
     public int compareTo(@NonNull Conversation another) {
-        return ComparisonChain.start()
-                .compareFalseFirst(
-                        another.getBooleanAttribute(ATTRIBUTE_PINNED_ON_TOP, false),
-                        getBooleanAttribute(ATTRIBUTE_PINNED_ON_TOP, false))
-                .compare(another.getSortableTime(), getSortableTime())
-                .result();
+        return getSortKey().compareTo(another.getSortKey());
+    }
+
+    /**
+     * @return a snapshot of everything {@link #compareTo(Conversation)} looks at. Computing it
+     *     once per conversation is considerably cheaper than comparing conversations directly when
+     *     sorting many of them.
+     */
+    public SortKey getSortKey() {
+        return new SortKey(getBooleanAttribute(ATTRIBUTE_PINNED_ON_TOP, false), getSortableTime());
     }
 
     private long getSortableTime() {
@@ -865,14 +908,9 @@ public class Conversation extends AbstractEntity
             return false;
         }
         synchronized (this.messages) {
-            for (Message message : this.messages) {
-                if (serverMsgId.equals(message.getServerMsgId())
-                        || remoteMsgId.equals(message.getRemoteMsgId())) {
-                    return true;
-                }
-            }
+            return !this.messageIndex.withServerMsgId(serverMsgId).isEmpty()
+                    || !this.messageIndex.withRemoteMsgId(remoteMsgId).isEmpty();
         }
-        return false;
     }
 
     public MamReference getLastMessageTransmitted() {
@@ -894,7 +932,12 @@ public class Conversation extends AbstractEntity
                 }
             }
         }
-        return MamReference.max(lastClear, lastReceived);
+        return MamReference.max(
+                lastClear, MamReference.max(lastReceived, lastMessageTransmittedFromSummary));
+    }
+
+    public void setLastMessageTransmittedFromSummary(final MamReference reference) {
+        this.lastMessageTransmittedFromSummary = reference;
     }
 
     public void setMutedTill(long value) {
@@ -1023,18 +1066,28 @@ public class Conversation extends AbstractEntity
     public void add(Message message) {
         synchronized (this.messages) {
             this.messages.add(message);
+            this.messageIndex.add(message);
+        }
+    }
+
+    @Nullable
+    public Message getOldestMessage() {
+        synchronized (this.messages) {
+            return this.messages.isEmpty() ? null : this.messages.get(0);
         }
     }
 
     public void prepend(int offset, Message message) {
         synchronized (this.messages) {
             this.messages.add(Math.min(offset, this.messages.size()), message);
+            this.messageIndex.add(message);
         }
     }
 
     public void addAll(int index, List<Message> messages) {
         synchronized (this.messages) {
             this.messages.addAll(index, messages);
+            this.messageIndex.addAll(messages);
         }
         account.getPgpDecryptionService().decrypt(messages);
     }
@@ -1043,8 +1096,10 @@ public class Conversation extends AbstractEntity
         synchronized (this.messages) {
             for (ListIterator<Message> iterator = this.messages.listIterator();
                     iterator.hasNext(); ) {
-                if (iterator.next().getTimeSent() < timestamp) {
+                final Message message = iterator.next();
+                if (message.getTimeSent() < timestamp) {
                     iterator.remove();
+                    this.messageIndex.remove(message);
                 }
             }
             untieMessages();
@@ -1069,9 +1124,14 @@ public class Conversation extends AbstractEntity
     }
 
     public boolean remove(final Message message) {
-        final var success = this.messages.remove(message);
-        this.untieMessages();
-        return success;
+        synchronized (this.messages) {
+            final var success = this.messages.remove(message);
+            if (success) {
+                this.messageIndex.remove(message);
+            }
+            this.untieMessages();
+            return success;
+        }
     }
 
     private void untieMessages() {
@@ -1189,4 +1249,15 @@ public class Conversation extends AbstractEntity
             return message;
         }
     }
+
+    public record SortKey(boolean pinned, long time) implements Comparable<SortKey> {
+
+        @Override
+        public int compareTo(@NonNull final SortKey another) {
+            return ComparisonChain.start()
+                    .compareFalseFirst(another.pinned, pinned)
+                    .compare(another.time, time)
+                    .result();
+        }
+    }
 }
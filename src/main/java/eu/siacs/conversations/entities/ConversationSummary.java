@@ -0,0 +1,58 @@
+package eu.siacs.conversations.entities;
+
+import android.database.Cursor;
+import eu.siacs.conversations.xmpp.mam.MamReference;
+
+/**
+ * What is known about the messages of a conversation without loading them. Kept up to date by
+ * triggers on the messages table so it can never disagree with the messages themselves.
+ */
+public record ConversationSummary(
+        String conversationUuid,
+        String lastMessageUuid,
+        long lastTimeSent,
+        int unreadCount,
+        String firstUnreadUuid,
+        int unsentCount,
+        long lastTransmittedTimeSent,
+        String lastTransmittedServerMsgId) {
+
+    public static final String TABLENAME = "conversation_summaries";
+
+    public static final String CONVERSATION = "conversationUuid";
+    public static final String LAST_MESSAGE = "lastMessageUuid";
+    public static final String LAST_TIME_SENT = "lastTimeSent";
+    public static final String UNREAD_COUNT = "unreadCount";
+    public static final String FIRST_UNREAD = "firstUnreadUuid";
+    public static final String UNSENT_COUNT = "unsentCount";
+    public static final String LAST_TRANSMITTED_TIME_SENT = "lastTransmittedTimeSent";
+    public static final String LAST_TRANSMITTED_SERVER_MSG_ID = "lastTransmittedServerMsgId";
+
+    /**
+     * @return true if a page of messages needs to be loaded at start up in order to post
+     *     notifications or to send pending messages
+     */
+    public boolean requiresMessages() {
+        return unreadCount > 0 || unsentCount > 0;
+    }
+
+    /**
+     * @return the same reference {@link Conversation#getLastMessageTransmitted()} would find if all
+     *     messages were loaded
+     */
+    public MamReference lastTransmitted() {
+        return new MamReference(lastTransmittedTimeSent, lastTransmittedServerMsgId);
+    }
+
+    public static ConversationSummary fromCursor(final Cursor cursor) {
+        return new ConversationSummary(
+                cursor.getString(cursor.getColumnIndexOrThrow(CONVERSATION)),
+                cursor.getString(cursor.getColumnIndexOrThrow(LAST_MESSAGE)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(LAST_TIME_SENT)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(UNREAD_COUNT)),
+                cursor.getString(cursor.getColumnIndexOrThrow(FIRST_UNREAD)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(UNSENT_COUNT)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(LAST_TRANSMITTED_TIME_SENT)),
+                cursor.getString(cursor.getColumnIndexOrThrow(LAST_TRANSMITTED_SERVER_MSG_ID)));
+    }
+}
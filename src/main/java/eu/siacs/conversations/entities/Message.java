@@ -247,33 +247,37 @@ public class Message extends AbstractEntity
     }
 
     public static Message fromCursor(final Cursor cursor, final Conversation conversation) {
+        return fromCursor(cursor, conversation, ColumnIndexes.of(cursor));
+    }
+
+    public static Message fromCursor(
+            final Cursor cursor, final Conversation conversation, final ColumnIndexes columns) {
         return new Message(
                 conversation,
-                cursor.getString(cursor.getColumnIndexOrThrow(UUID)),
-                cursor.getString(cursor.getColumnIndexOrThrow(CONVERSATION)),
-                fromString(cursor.getString(cursor.getColumnIndexOrThrow(COUNTERPART))),
-                fromString(cursor.getString(cursor.getColumnIndexOrThrow(TRUE_COUNTERPART))),
-                cursor.getString(cursor.getColumnIndexOrThrow(BODY)),
-                cursor.getLong(cursor.getColumnIndexOrThrow(TIME_SENT)),
-                cursor.getInt(cursor.getColumnIndexOrThrow(ENCRYPTION)),
-                cursor.getInt(cursor.getColumnIndexOrThrow(STATUS)),
-                cursor.getInt(cursor.getColumnIndexOrThrow(TYPE)),
-                cursor.getInt(cursor.getColumnIndexOrThrow(CARBON)) > 0,
-                cursor.getString(cursor.getColumnIndexOrThrow(REMOTE_MSG_ID)),
-                cursor.getString(cursor.getColumnIndexOrThrow(RELATIVE_FILE_PATH)),
-                cursor.getString(cursor.getColumnIndexOrThrow(SERVER_MSG_ID)),
-                cursor.getString(cursor.getColumnIndexOrThrow(FINGERPRINT)),
-                cursor.getInt(cursor.getColumnIndexOrThrow(READ)) > 0,
-                cursor.getString(cursor.getColumnIndexOrThrow(EDITED)),
-                cursor.getInt(cursor.getColumnIndexOrThrow(OOB)) > 0,
-                cursor.getString(cursor.getColumnIndexOrThrow(ERROR_MESSAGE)),
-                ReadByMarker.fromJsonString(
-                        cursor.getString(cursor.getColumnIndexOrThrow(READ_BY_MARKERS))),
-                cursor.getInt(cursor.getColumnIndexOrThrow(MARKABLE)) > 0,
-                cursor.getInt(cursor.getColumnIndexOrThrow(DELETED)) > 0,
-                cursor.getString(cursor.getColumnIndexOrThrow(BODY_LANGUAGE)),
-                cursor.getString(cursor.getColumnIndexOrThrow(OCCUPANT_ID)),
-                Reaction.fromString(cursor.getString(cursor.getColumnIndexOrThrow(REACTIONS))));
+                cursor.getString(columns.uuid),
+                cursor.getString(columns.conversation),
+                fromString(cursor.getString(columns.counterpart)),
+                fromString(cursor.getString(columns.trueCounterpart)),
+                cursor.getString(columns.body),
+                cursor.getLong(columns.timeSent),
+                cursor.getInt(columns.encryption),
+                cursor.getInt(columns.status),
+                cursor.getInt(columns.type),
+                cursor.getInt(columns.carbon) > 0,
+                cursor.getString(columns.remoteMsgId),
+                cursor.getString(columns.relativeFilePath),
+                cursor.getString(columns.serverMsgId),
+                cursor.getString(columns.fingerprint),
+                cursor.getInt(columns.read) > 0,
+                cursor.getString(columns.edited),
+                cursor.getInt(columns.oob) > 0,
+                cursor.getString(columns.errorMessage),
+                ReadByMarker.fromJsonString(cursor.getString(columns.readByMarkers)),
+                cursor.getInt(columns.markable) > 0,
+                cursor.getInt(columns.deleted) > 0,
+                cursor.getString(columns.bodyLanguage),
+                cursor.getString(columns.occupantId),
+                Reaction.fromString(cursor.getString(columns.reactions)));
     }
 
     private static Jid fromString(String value) {
@@ -451,7 +455,11 @@ public class Message extends AbstractEntity
     }
 
     public void setRemoteMsgId(String id) {
+        final String previous = this.remoteMsgId;
         this.remoteMsgId = id;
+        if (this.conversation instanceof Conversation c) {
+            c.onRemoteMsgIdChanged(this, previous);
+        }
     }
 
     public String getServerMsgId() {
@@ -459,7 +467,11 @@ public class Message extends AbstractEntity
     }
 
     public void setServerMsgId(String id) {
+        final String previous = this.serverMsgId;
         this.serverMsgId = id;
+        if (this.conversation instanceof Conversation c) {
+            c.onServerMsgIdChanged(this, previous);
+        }
     }
 
     public boolean isRead() {
@@ -756,7 +768,11 @@ public class Message extends AbstractEntity
     }
 
     public void setUuid(String uuid) {
+        final String previous = this.uuid;
         this.uuid = uuid;
+        if (this.conversation instanceof Conversation c) {
+            c.onUuidChanged(this, previous);
+        }
     }
 
     public String getEditedId() {
@@ -1027,4 +1043,63 @@ public class Message extends AbstractEntity
         message.setType(isFile ? Message.TYPE_PRIVATE_FILE : Message.TYPE_PRIVATE);
         return true;
     }
+
+    /**
+     * Column positions of a message cursor. Resolve them once per cursor and reuse them for every
+     * row instead of looking up each column by name for every message.
+     */
+    public record ColumnIndexes(
+            int uuid,
+            int conversation,
+            int counterpart,
+            int trueCounterpart,
+            int body,
+            int timeSent,
+            int encryption,
+            int status,
+            int type,
+            int carbon,
+            int remoteMsgId,
+            int relativeFilePath,
+            int serverMsgId,
+            int fingerprint,
+            int read,
+            int edited,
+            int oob,
+            int errorMessage,
+            int readByMarkers,
+            int markable,
+            int deleted,
+            int bodyLanguage,
+            int occupantId,
+            int reactions) {
+
+        public static ColumnIndexes of(final Cursor cursor) {
+            return new ColumnIndexes(
+                    cursor.getColumnIndexOrThrow(UUID),
+                    cursor.getColumnIndexOrThrow(CONVERSATION),
+                    cursor.getColumnIndexOrThrow(COUNTERPART),
+                    cursor.getColumnIndexOrThrow(TRUE_COUNTERPART),
+                    cursor.getColumnIndexOrThrow(BODY),
+                    cursor.getColumnIndexOrThrow(TIME_SENT),
+                    cursor.getColumnIndexOrThrow(ENCRYPTION),
+                    cursor.getColumnIndexOrThrow(STATUS),
+                    cursor.getColumnIndexOrThrow(TYPE),
+                    cursor.getColumnIndexOrThrow(CARBON),
+                    cursor.getColumnIndexOrThrow(REMOTE_MSG_ID),
+                    cursor.getColumnIndexOrThrow(RELATIVE_FILE_PATH),
+                    cursor.getColumnIndexOrThrow(SERVER_MSG_ID),
+                    cursor.getColumnIndexOrThrow(FINGERPRINT),
+                    cursor.getColumnIndexOrThrow(READ),
+                    cursor.getColumnIndexOrThrow(EDITED),
+                    cursor.getColumnIndexOrThrow(OOB),
+                    cursor.getColumnIndexOrThrow(ERROR_MESSAGE),
+                    cursor.getColumnIndexOrThrow(READ_BY_MARKERS),
+                    cursor.getColumnIndexOrThrow(MARKABLE),
+                    cursor.getColumnIndexOrThrow(DELETED),
+                    cursor.getColumnIndexOrThrow(BODY_LANGUAGE),
+                    cursor.getColumnIndexOrThrow(OCCUPANT_ID),
+                    cursor.getColumnIndexOrThrow(REACTIONS));
+        }
+    }
 }
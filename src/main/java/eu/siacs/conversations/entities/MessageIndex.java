@@ -0,0 +1,99 @@
+package eu.siacs.conversations.entities;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Secondary indexes (uuid, remote id, server id) over the messages loaded into a {@link
+ * Conversation}. The index is not thread safe on its own; all access happens while holding the
+ * lock on {@link Conversation#messages}.
+ */
+final class MessageIndex {
+
+    private final ListMultimap<String, Message> byUuid = ArrayListMultimap.create();
+    private final ListMultimap<String, Message> byRemoteMsgId = ArrayListMultimap.create();
+    private final ListMultimap<String, Message> byServerMsgId = ArrayListMultimap.create();
+
+    void add(final Message message) {
+        put(byUuid, message.getUuid(), message);
+        put(byRemoteMsgId, message.getRemoteMsgId(), message);
+        put(byServerMsgId, message.getServerMsgId(), message);
+    }
+
+    void addAll(final Collection<Message> messages) {
+        for (final Message message : messages) {
+            add(message);
+        }
+    }
+
+    void remove(final Message message) {
+        remove(byUuid, message.getUuid(), message);
+        remove(byRemoteMsgId, message.getRemoteMsgId(), message);
+        remove(byServerMsgId, message.getServerMsgId(), message);
+    }
+
+    void removeAll(final Collection<Message> messages) {
+        for (final Message message : messages) {
+            remove(message);
+        }
+    }
+
+    void clear() {
+        byUuid.clear();
+        byRemoteMsgId.clear();
+        byServerMsgId.clear();
+    }
+
+    boolean contains(final Message message) {
+        final String uuid = message.getUuid();
+        return uuid != null && byUuid.containsEntry(uuid, message);
+    }
+
+    void updateUuid(final Message message, final String previous) {
+        if (previous != null && byUuid.remove(previous, message)) {
+            put(byUuid, message.getUuid(), message);
+        }
+    }
+
+    void updateRemoteMsgId(final Message message, final String previous) {
+        if (contains(message)) {
+            remove(byRemoteMsgId, previous, message);
+            put(byRemoteMsgId, message.getRemoteMsgId(), message);
+        }
+    }
+
+    void updateServerMsgId(final Message message, final String previous) {
+        if (contains(message)) {
+            remove(byServerMsgId, previous, message);
+            put(byServerMsgId, message.getServerMsgId(), message);
+        }
+    }
+
+    List<Message> withUuid(final String uuid) {
+        return byUuid.get(uuid);
+    }
+
+    List<Message> withRemoteMsgId(final String remoteMsgId) {
+        return byRemoteMsgId.get(remoteMsgId);
+    }
+
+    List<Message> withServerMsgId(final String serverMsgId) {
+        return byServerMsgId.get(serverMsgId);
+    }
+
+    private static void put(
+            final ListMultimap<String, Message> index, final String key, final Message message) {
+        if (key != null) {
+            index.put(key, message);
+        }
+    }
+
+    private static void remove(
+            final ListMultimap<String, Message> index, final String key, final Message message) {
+        if (key != null) {
+            index.remove(key, message);
+        }
+    }
+}
@@ -6,11 +6,13 @@ import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Ordering;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
@@ -85,7 +87,11 @@ public class MucOptions {
             };
 
     private final Map<AddressableId, User> users = new HashMap<>();
-    private final Map<Id, User> usersByOccupantId = new HashMap<>();
+    // the following indexes are kept in sync with users by putUser() and removeUser()
+    // several devices of the same account share an occupant id; the last one indexed wins
+    private final ListMultimap<Id, User> usersByOccupantId = ArrayListMultimap.create();
+    private final ListMultimap<Jid, User> onlineUsersByRealAddress = ArrayListMultimap.create();
+    private int occupantIdCount = 0;
     private final Conversation conversation;
     private final Account account;
     public OnRenameListener onRenameListener = null;
@@ -120,7 +126,7 @@ public class MucOptions {
         Log.d(Config.LOGTAG, "setSelf(" + user + ")");
         synchronized (this.users) {
             // on same nick merges we need to remove the other device
-            if (java.util.Objects.nonNull(this.users.remove(Id.resource(user.getFullJid())))) {
+            if (java.util.Objects.nonNull(this.removeUser(Id.resource(user.getFullJid())))) {
                 Log.d(
                         Config.LOGTAG,
                         account.getJid().asBareJid()
@@ -128,9 +134,10 @@ public class MucOptions {
                                 + user.getFullJid());
             }
             // this should not be happening but attempting to remove it does not hurt
-            this.users.remove(Id.realAddress(user.getRealJid()));
+            this.removeUser(Id.realAddress(user.getRealJid()));
             this.self = user.asConnectedSelf();
-            this.resetOccupantIdMap();
+            // which user is our account depends on self
+            this.rebuildIndexes();
         }
         final boolean roleChanged =
                 this.conversation.setAttribute("role", user.getRole().toString());
@@ -143,8 +150,7 @@ public class MucOptions {
         synchronized (this.users) {
             final var user = this.users.get(Id.realAddress(jid));
             if (user != null && user.getRole() == Role.NONE) {
-                final var modifiedUser = user.withAffiliation(affiliation);
-                this.users.put(modifiedUser.asId(), modifiedUser);
+                this.putUser(user.withAffiliation(affiliation));
             }
         }
     }
@@ -366,9 +372,7 @@ public class MucOptions {
 
     public User deleteUser(final Jid jid) {
         synchronized (this.users) {
-            final var user = this.users.remove(Id.resource(jid));
-            this.resetOccupantIdMap();
-            return user;
+            return this.removeUser(Id.resource(jid));
         }
     }
 
@@ -389,10 +393,10 @@ public class MucOptions {
             final var real = user.getRealJid();
             final var resource = user.getFullJid();
             if (real != null) {
-                this.users.remove(Id.realAddress(real));
+                this.removeUser(Id.realAddress(real));
             }
             if (resource != null) {
-                this.users.remove(Id.resource(resource));
+                this.removeUser(Id.resource(resource));
             }
 
             // if type null add normal; if type == unavailable add as real jid
@@ -405,49 +409,110 @@ public class MucOptions {
                                     + ": ignore same-nick merge "
                                     + user.getFullJid());
                 } else {
-                    this.users.put(user.asId(), user);
+                    this.putUser(user);
                 }
             } else if (type == Presence.Type.UNAVAILABLE
                     && real != null
                     && membersOnly()
                     && user.ranks(Affiliation.MEMBER)) {
-                if (isOurAccount(user) || isOnline(real, this.users)) {
+                if (isOurAccount(user) || isOnline(real)) {
                     // for our account and users that are online with a second device do not keep
                     // offline variant
-                    this.resetOccupantIdMap();
                     return;
                 }
-                final var offline = user.asOfflineUser();
-                this.users.put(offline.asId(), offline);
+                this.putUser(user.asOfflineUser());
             }
             // TODO support nick changes so we don't go from
-            this.resetOccupantIdMap();
         }
     }
 
-    private static boolean isOnline(final Jid address, final Map<AddressableId, User> users) {
-        return Iterables.any(
-                users.values(), u -> u.getFullJid() != null && address.equals(u.getRealJid()));
+    private boolean isOnline(final Jid address) {
+        return this.onlineUsersByRealAddress.containsKey(address);
     }
 
-    private void resetOccupantIdMap() {
+    private void putUser(final User user) {
+        final var previous = this.users.put(user.asId(), user);
+        if (previous != null) {
+            this.unindexUser(previous);
+        }
+        this.indexUser(user);
+    }
+
+    private User removeUser(final AddressableId id) {
+        final var user = this.users.remove(id);
+        if (user != null) {
+            this.unindexUser(user);
+        }
+        return user;
+    }
+
+    private void rebuildIndexes() {
+        this.onlineUsersByRealAddress.clear();
         synchronized (this.usersByOccupantId) {
             this.usersByOccupantId.clear();
-            final var builder = new ImmutableMap.Builder<Id, User>();
-            for (final var user : this.users.values()) {
-                // exclude our account in occupant id map. This map will be used for getUsersPreview
-                // and we generally don't want our account in there
-                if (isOurAccount(user)) {
-                    continue;
-                }
-                if (user.occupantId != null) {
-                    builder.put(Id.occupantId(user.occupantId), user);
-                } else if (user.realJid != null && user.fullJid == null) {
-                    // we include offline users here as well in order to make getUsersPreview work
-                    builder.put(Id.realAddress(user.realJid), user);
-                }
+            this.occupantIdCount = 0;
+        }
+        for (final var user : this.users.values()) {
+            this.indexUser(user);
+        }
+    }
+
+    private void indexUser(final User user) {
+        if (user.fullJid != null && user.realJid != null) {
+            this.onlineUsersByRealAddress.put(user.realJid, user);
+        }
+        final var id = occupantIndexId(user);
+        if (id == null) {
+            return;
+        }
+        synchronized (this.usersByOccupantId) {
+            if (!this.usersByOccupantId.containsKey(id) && id instanceof OccupantId) {
+                this.occupantIdCount++;
             }
-            this.usersByOccupantId.putAll(builder.buildKeepingLast());
+            this.usersByOccupantId.put(id, user);
+        }
+    }
+
+    private void unindexUser(final User user) {
+        if (user.fullJid != null && user.realJid != null) {
+            this.onlineUsersByRealAddress.remove(user.realJid, user);
+        }
+        final var id = occupantIndexId(user);
+        if (id == null) {
+            return;
+        }
+        synchronized (this.usersByOccupantId) {
+            // other devices of the same occupant keep the entry alive
+            if (this.usersByOccupantId.remove(id, user)
+                    && !this.usersByOccupantId.containsKey(id)
+                    && id instanceof OccupantId) {
+                this.occupantIdCount--;
+            }
+        }
+    }
+
+    @Nullable
+    private User getByOccupantIndexId(final Id id) {
+        synchronized (this.usersByOccupantId) {
+            final var users = this.usersByOccupantId.get(id);
+            return users.isEmpty() ? null : users.get(users.size() - 1);
+        }
+    }
+
+    @Nullable
+    private Id occupantIndexId(final User user) {
+        // exclude our account in occupant id map. This map will be used for getUsersPreview
+        // and we generally don't want our account in there
+        if (isOurAccount(user)) {
+            return null;
+        }
+        if (user.occupantId != null) {
+            return Id.occupantId(user.occupantId);
+        } else if (user.realJid != null && user.fullJid == null) {
+            // we include offline users here as well in order to make getUsersPreview work
+            return Id.realAddress(user.realJid);
+        } else {
+            return null;
         }
     }
 
@@ -468,9 +533,7 @@ public class MucOptions {
         if (self != null && occupantId.equals(self.getOccupantId())) {
             return self;
         }
-        synchronized (this.usersByOccupantId) {
-            return this.usersByOccupantId.get(Id.occupantId(occupantId));
-        }
+        return getByOccupantIndexId(Id.occupantId(occupantId));
     }
 
     @Nullable
@@ -482,7 +545,7 @@ public class MucOptions {
             if (occupantId != null) {
                 // online users will be found by occupant id. offline users by real address
                 // there is no need for a deep seek
-                final var byOccupantId = this.usersByOccupantId.get(Id.occupantId(occupantId));
+                final var byOccupantId = getByOccupantIndexId(Id.occupantId(occupantId));
                 if (byOccupantId != null) {
                     return byOccupantId;
                 }
@@ -497,14 +560,13 @@ public class MucOptions {
                 }
                 return null;
             } else if (realAddress != null) {
-                // if we have a real address we first try to look up offline users because that look
-                // up is cheap before iterating through all online users
+                // offline users are keyed by their real address; online users are looked up in
+                // onlineUsersByRealAddress. both are index look ups
                 final var offline = this.users.get(Id.realAddress(realAddress));
                 if (offline != null) {
                     return offline;
                 }
-                return Iterables.find(
-                        this.users.values(), u -> realAddress.equals(u.realJid), null);
+                return Iterables.getFirst(this.onlineUsersByRealAddress.get(realAddress), null);
             } else if (address != null) {
                 return this.users.get(Id.resource(address));
             } else {
@@ -570,12 +632,15 @@ public class MucOptions {
     public List<User> getUsersPreview(final int max) {
         synchronized (this.users) {
             final Collection<User> users;
-            if (Iterables.any(this.usersByOccupantId.keySet(), id -> id instanceof OccupantId)) {
-                users = this.usersByOccupantId.values();
+            if (this.occupantIdCount > 0) {
+                users =
+                        Collections2.transform(
+                                this.usersByOccupantId.asMap().values(), Iterables::getLast);
             } else {
                 users = this.users.values();
             }
-            return ImmutableList.copyOf(Iterables.limit(VISUAL_ORDERING.sortedCopy(users), max));
+            // selects the first few without sorting everyone
+            return ImmutableList.copyOf(VISUAL_ORDERING.leastOf(users, max));
         }
     }
 
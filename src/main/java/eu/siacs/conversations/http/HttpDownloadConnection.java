@@ -21,6 +21,7 @@ import eu.siacs.conversations.utils.Compatibility;
 import eu.siacs.conversations.utils.CryptoHelper;
 import eu.siacs.conversations.utils.FileWriterException;
 import eu.siacs.conversations.utils.MimeUtils;
+import eu.siacs.conversations.utils.TransferEngine;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -534,20 +535,24 @@ public class HttpDownloadConnection implements Transferable {
                 throws IOException, FileWriterException {
             long transmitted = offset;
             int count;
-            final byte[] buffer = new byte[4096];
+            final byte[] buffer = TransferEngine.acquireBuffer();
             updateProgress(Math.round(((double) transmitted / expected) * 100));
-            while ((count = inputStream.read(buffer)) != -1) {
-                transmitted += count;
-                try {
-                    outputStream.write(buffer, 0, count);
-                } catch (final IOException e) {
-                    throw new FileWriterException(file);
-                }
-                if (transmitted > expected) {
-                    throw new InvalidFileException(
-                            String.format("File exceeds expected size of %d", expected));
+            try {
+                while ((count = inputStream.read(buffer)) != -1) {
+                    transmitted += count;
+                    try {
+                        outputStream.write(buffer, 0, count);
+                    } catch (final IOException e) {
+                        throw new FileWriterException(file);
+                    }
+                    if (transmitted > expected) {
+                        throw new InvalidFileException(
+                                String.format("File exceeds expected size of %d", expected));
+                    }
+                    updateProgress(Math.round(((double) transmitted / expected) * 100));
                 }
-                updateProgress(Math.round(((double) transmitted / expected) * 100));
+            } finally {
+                TransferEngine.releaseBuffer(buffer);
             }
         }
 
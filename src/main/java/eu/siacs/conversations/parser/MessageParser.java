@@ -380,6 +380,8 @@ public class MessageParser extends AbstractParser
                             false,
                             query,
                             false);
+            // duplicate detection and corrections look at the messages in memory
+            mXmppConnectionService.hydrateMessages(conversation);
             final boolean conversationMultiMode = conversation.getMode() == Conversation.MODE_MULTI;
 
             if (serverMsgId == null) {
@@ -726,7 +728,11 @@ public class MessageParser extends AbstractParser
                 getManager(DeliveryReceiptManager.class).processRequest(packet, query);
             }
 
-            mXmppConnectionService.databaseBackend.createMessage(message);
+            if (query == null) {
+                mXmppConnectionService.databaseBackend.createMessage(message);
+            } else {
+                mXmppConnectionService.databaseBackend.createMessageDeferred(message);
+            }
             final HttpConnectionManager manager =
                     this.mXmppConnectionService.getHttpConnectionManager();
             final var autoAcceptFileSize =
@@ -742,10 +748,14 @@ public class MessageParser extends AbstractParser
                     mXmppConnectionService.getNotificationService().push(message);
                 }
             }
-            this.mXmppConnectionService.updateConversationUi();
+            this.mXmppConnectionService.updateConversationUi(conversation);
         } else { // no body
 
             final var conversation = mXmppConnectionService.find(account, counterpart.asBareJid());
+            if (conversation != null) {
+                // receipts, markers, reactions and retractions refer to messages in memory
+                mXmppConnectionService.hydrateMessages(conversation);
+            }
             if (axolotlEncrypted != null) {
                 final Jid origin;
                 if (conversation != null && conversation.getMode() == Conversation.MODE_MULTI) {
@@ -799,7 +809,7 @@ public class MessageParser extends AbstractParser
                                         .setSubject(subject.content)) {
                             mXmppConnectionService.updateConversation(conversation);
                         }
-                        mXmppConnectionService.updateConversationUi();
+                        mXmppConnectionService.updateConversationUi(conversation);
                         return;
                     }
                 }
@@ -6,15 +6,19 @@ import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.os.Environment;
 import android.os.SystemClock;
 import android.util.Base64;
 import android.util.Log;
+import com.google.common.base.Joiner;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Ordering;
 import eu.siacs.conversations.Config;
 import eu.siacs.conversations.crypto.axolotl.AxolotlService;
 import eu.siacs.conversations.crypto.axolotl.FingerprintStatus;
@@ -22,6 +26,7 @@ import eu.siacs.conversations.crypto.axolotl.SQLiteAxolotlStore;
 import eu.siacs.conversations.entities.Account;
 import eu.siacs.conversations.entities.Contact;
 import eu.siacs.conversations.entities.Conversation;
+import eu.siacs.conversations.entities.ConversationSummary;
 import eu.siacs.conversations.entities.Message;
 import eu.siacs.conversations.entities.PresenceTemplate;
 import eu.siacs.conversations.services.QuickConversationsService;
@@ -31,6 +36,7 @@ import eu.siacs.conversations.utils.CursorUtils;
 import eu.siacs.conversations.utils.FtsUtils;
 import eu.siacs.conversations.utils.MimeUtils;
 import eu.siacs.conversations.utils.Resolver;
+import eu.siacs.conversations.utils.ResolverCache;
 import eu.siacs.conversations.xmpp.Jid;
 import eu.siacs.conversations.xmpp.mam.MamReference;
 import im.conversations.android.xml.XmlElementReader;
@@ -55,6 +61,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
 import org.json.JSONObject;
 import org.jxmpp.jid.parts.Localpart;
 import org.jxmpp.stringprep.XmppStringprepException;
@@ -69,7 +76,10 @@ import org.whispersystems.libsignal.state.SignedPreKeyRecord;
 public class DatabaseBackend extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "history";
-    private static final int DATABASE_VERSION = 54;
+    private static final int DATABASE_VERSION = 60;
+
+    private static final int MESSAGE_GROUP_COMMIT_SIZE = 250;
+    private static final long MESSAGE_GROUP_COMMIT_DELAY = 1000;
 
     private static boolean requiresMessageIndexRebuild = false;
     private static DatabaseBackend instance = null;
@@ -254,6 +264,42 @@ public class DatabaseBackend extends SQLiteOpenHelper {
 
     private static final String RESOLVER_RESULTS_TABLENAME = "resolver_results";
 
+    private static final String CREATE_RESOLVER_CACHE_TABLE =
+            "create table "
+                    + ResolverCache.TABLENAME
+                    + "("
+                    + Resolver.Result.DOMAIN
+                    + " TEXT,"
+                    + ResolverCache.NETWORK
+                    + " TEXT,"
+                    + ResolverCache.POSITION
+                    + " NUMBER,"
+                    + Resolver.Result.HOSTNAME
+                    + " TEXT,"
+                    + Resolver.Result.IP
+                    + " BLOB,"
+                    + Resolver.Result.PRIORITY
+                    + " NUMBER,"
+                    + Resolver.Result.DIRECT_TLS
+                    + " NUMBER,"
+                    + Resolver.Result.AUTHENTICATED
+                    + " NUMBER,"
+                    + Resolver.Result.PORT
+                    + " NUMBER,"
+                    + ResolverCache.EXPIRES
+                    + " NUMBER,"
+                    + ResolverCache.DURATION
+                    + " NUMBER);";
+
+    private static final String CREATE_RESOLVER_CACHE_INDEX =
+            "CREATE INDEX resolver_cache_index ON "
+                    + ResolverCache.TABLENAME
+                    + "("
+                    + Resolver.Result.DOMAIN
+                    + ","
+                    + ResolverCache.NETWORK
+                    + ");";
+
     private static final String CREATE_RESOLVER_RESULTS_TABLE =
             "create table "
                     + RESOLVER_RESULTS_TABLENAME
@@ -289,6 +335,14 @@ public class DatabaseBackend extends SQLiteOpenHelper {
                     + "("
                     + Message.CONVERSATION
                     + ")";
+    private static final String CREATE_MESSAGE_CONVERSATION_TIME_INDEX =
+            "CREATE INDEX message_conversation_time_index ON "
+                    + Message.TABLENAME
+                    + "("
+                    + Message.CONVERSATION
+                    + ","
+                    + Message.TIME_SENT
+                    + ")";
     private static final String CREATE_MESSAGE_DELETED_INDEX =
             "CREATE INDEX message_deleted_index ON "
                     + Message.TABLENAME
@@ -306,7 +360,7 @@ public class DatabaseBackend extends SQLiteOpenHelper {
 
     private static final String CREATE_MESSAGE_INDEX_TABLE =
             "CREATE VIRTUAL TABLE messages_index USING fts4"
-                    + " (uuid,body,notindexed=\"uuid\",content=\""
+                    + " (uuid,body,notindexed=\"uuid\",prefix=\"2,3\",content=\""
                     + Message.TABLENAME
                     + "\",tokenize='unicode61')";
     private static final String CREATE_MESSAGE_INSERT_TRIGGER =
@@ -326,6 +380,197 @@ public class DatabaseBackend extends SQLiteOpenHelper {
     private static final String COPY_PREEXISTING_ENTRIES =
             "INSERT INTO messages_index(messages_index) VALUES('rebuild');";
 
+    private static final String CREATE_CONVERSATION_SUMMARY_TABLE =
+            "CREATE TABLE "
+                    + ConversationSummary.TABLENAME
+                    + "("
+                    + ConversationSummary.CONVERSATION
+                    + " TEXT PRIMARY KEY,"
+                    + ConversationSummary.LAST_MESSAGE
+                    + " TEXT,"
+                    + ConversationSummary.LAST_TIME_SENT
+                    + " NUMBER,"
+                    + ConversationSummary.UNREAD_COUNT
+                    + " NUMBER,"
+                    + ConversationSummary.FIRST_UNREAD
+                    + " TEXT,"
+                    + ConversationSummary.UNSENT_COUNT
+                    + " NUMBER,"
+                    + ConversationSummary.LAST_TRANSMITTED_TIME_SENT
+                    + " NUMBER,"
+                    + ConversationSummary.LAST_TRANSMITTED_SERVER_MSG_ID
+                    + " TEXT)";
+    private static final String MESSAGE_UNREAD = Message.READ + "=0";
+    private static final String MESSAGE_UNSENT =
+            Message.STATUS
+                    + " IN ("
+                    + Message.STATUS_UNSEND
+                    + ","
+                    + Message.STATUS_WAITING
+                    + ")";
+    // mirrors Conversation.getLastMessageTransmitted(); private messages are not a safe anchor
+    private static final String MESSAGE_TRANSMITTED =
+            Message.TYPE
+                    + " NOT IN ("
+                    + Message.TYPE_PRIVATE
+                    + ","
+                    + Message.TYPE_PRIVATE_FILE
+                    + ") AND ("
+                    + Message.STATUS
+                    + "="
+                    + Message.STATUS_RECEIVED
+                    + " OR "
+                    + Message.CARBON
+                    + "=1 OR "
+                    + Message.SERVER_MSG_ID
+                    + " IS NOT NULL)";
+    // partial indexes keep the summary triggers from scanning entire conversations
+    private static final String CREATE_MESSAGE_UNREAD_INDEX =
+            "CREATE INDEX message_unread_index ON "
+                    + Message.TABLENAME
+                    + "("
+                    + Message.CONVERSATION
+                    + ","
+                    + Message.TIME_SENT
+                    + ") WHERE "
+                    + MESSAGE_UNREAD;
+    private static final String CREATE_MESSAGE_UNSENT_INDEX =
+            "CREATE INDEX message_unsent_index ON "
+                    + Message.TABLENAME
+                    + "("
+                    + Message.CONVERSATION
+                    + ") WHERE "
+                    + MESSAGE_UNSENT;
+    private static final String CREATE_SUMMARY_INSERT_TRIGGER =
+            "CREATE TRIGGER after_message_insert_summary AFTER INSERT ON "
+                    + Message.TABLENAME
+                    + " BEGIN "
+                    + computeConversationSummary("NEW." + Message.CONVERSATION)
+                    + "; END;";
+    private static final String CREATE_SUMMARY_UPDATE_TRIGGER =
+            "CREATE TRIGGER after_message_update_summary AFTER UPDATE OF "
+                    + Joiner.on(',')
+                            .join(
+                                    Message.CONVERSATION,
+                                    Message.TIME_SENT,
+                                    Message.READ,
+                                    Message.STATUS,
+                                    Message.TYPE,
+                                    Message.CARBON,
+                                    Message.SERVER_MSG_ID)
+                    + " ON "
+                    + Message.TABLENAME
+                    + " BEGIN "
+                    + computeConversationSummary("NEW." + Message.CONVERSATION)
+                    + "; END;";
+    private static final String CREATE_SUMMARY_DELETE_TRIGGER =
+            "CREATE TRIGGER after_message_delete_summary AFTER DELETE ON "
+                    + Message.TABLENAME
+                    + " BEGIN "
+                    + computeConversationSummary("OLD." + Message.CONVERSATION)
+                    + "; DELETE FROM "
+                    + ConversationSummary.TABLENAME
+                    + " WHERE "
+                    + ConversationSummary.CONVERSATION
+                    + "=OLD."
+                    + Message.CONVERSATION
+                    + " AND "
+                    + ConversationSummary.LAST_MESSAGE
+                    + " IS NULL; END;";
+    // every update to a message moves it to the end of this table. incremental backups pick up
+    // the messages that have been changed since their base was taken from here
+    private static final String CREATE_MESSAGE_CHANGES_TABLE =
+            "CREATE TABLE message_changes(id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + " messageRowid INTEGER UNIQUE)";
+    private static final String CREATE_MESSAGE_CHANGES_UPDATE_TRIGGER =
+            "CREATE TRIGGER after_message_update_changes AFTER UPDATE ON "
+                    + Message.TABLENAME
+                    + " BEGIN INSERT OR REPLACE INTO message_changes(messageRowid)"
+                    + " VALUES(NEW.rowid); END;";
+    private static final String CREATE_MESSAGE_CHANGES_DELETE_TRIGGER =
+            "CREATE TRIGGER after_message_delete_changes AFTER DELETE ON "
+                    + Message.TABLENAME
+                    + " BEGIN DELETE FROM message_changes WHERE messageRowid=OLD.rowid; END;";
+    private static final String COMPUTE_ALL_CONVERSATION_SUMMARIES =
+            computeConversationSummary("c")
+                    + " FROM (SELECT DISTINCT "
+                    + Message.CONVERSATION
+                    + " AS c FROM "
+                    + Message.TABLENAME
+                    + ")";
+
+    private static final int MESSAGE_INDEX_BATCH_SIZE = 2_000;
+
+    private final List<Message> pendingMessages = new ArrayList<>();
+    private long pendingMessagesSince = 0;
+
+    /**
+     * @param conversation an SQL expression evaluating to the uuid of the conversation
+     */
+    private static String computeConversationSummary(final String conversation) {
+        final String messages =
+                " FROM "
+                        + Message.TABLENAME
+                        + " WHERE "
+                        + Message.CONVERSATION
+                        + "="
+                        + conversation;
+        return "INSERT OR REPLACE INTO "
+                + ConversationSummary.TABLENAME
+                + "("
+                + Joiner.on(',')
+                        .join(
+                                ConversationSummary.CONVERSATION,
+                                ConversationSummary.LAST_MESSAGE,
+                                ConversationSummary.LAST_TIME_SENT,
+                                ConversationSummary.UNREAD_COUNT,
+                                ConversationSummary.FIRST_UNREAD,
+                                ConversationSummary.UNSENT_COUNT,
+                                ConversationSummary.LAST_TRANSMITTED_TIME_SENT,
+                                ConversationSummary.LAST_TRANSMITTED_SERVER_MSG_ID)
+                + ") SELECT "
+                + conversation
+                + ",(SELECT "
+                + Message.UUID
+                + messages
+                + " ORDER BY "
+                + Message.TIME_SENT
+                + " DESC, rowid DESC LIMIT 1),(SELECT max("
+                + Message.TIME_SENT
+                + ")"
+                + messages
+                + "),(SELECT count(*)"
+                + messages
+                + " AND "
+                + MESSAGE_UNREAD
+                + "),(SELECT "
+                + Message.UUID
+                + messages
+                + " AND "
+                + MESSAGE_UNREAD
+                + " ORDER BY "
+                + Message.TIME_SENT
+                + ", rowid LIMIT 1),(SELECT count(*)"
+                + messages
+                + " AND "
+                + MESSAGE_UNSENT
+                + "),(SELECT "
+                + Message.TIME_SENT
+                + messages
+                + " AND "
+                + MESSAGE_TRANSMITTED
+                + " ORDER BY "
+                + Message.TIME_SENT
+                + " DESC, rowid DESC LIMIT 1),(SELECT "
+                + Message.SERVER_MSG_ID
+                + messages
+                + " AND "
+                + MESSAGE_TRANSMITTED
+                + " ORDER BY "
+                + Message.TIME_SENT
+                + " DESC, rowid DESC LIMIT 1)";
+    }
+
     private DatabaseBackend(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
@@ -349,6 +594,88 @@ public class DatabaseBackend extends SQLiteOpenHelper {
         Log.d(Config.LOGTAG, "rebuilt message index in " + stopwatch.stop());
     }
 
+    /**
+     * Adds messages that are missing from the full text index in small batches so that writers
+     * are not blocked for the entire duration. New messages are indexed by trigger in the meantime.
+     * Nothing is kept track of; if the process dies halfway through the next call simply picks up
+     * the remaining messages.
+     */
+    public void completeMessagesIndex() {
+        commitPendingMessages();
+        final SQLiteDatabase db = getWritableDatabase();
+        final long messages = DatabaseUtils.queryNumEntries(db, Message.TABLENAME);
+        final long indexed = DatabaseUtils.queryNumEntries(db, "messages_index_docsize");
+        if (indexed >= messages) {
+            return;
+        }
+        Log.d(Config.LOGTAG, "indexing " + (messages - indexed) + " messages");
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final long max =
+                DatabaseUtils.longForQuery(db, "SELECT max(rowid) FROM " + Message.TABLENAME, null);
+        try (final SQLiteStatement statement =
+                db.compileStatement(
+                        "INSERT INTO messages_index(rowid,uuid,body) SELECT rowid,uuid,body FROM "
+                                + Message.TABLENAME
+                                + " WHERE rowid>=? AND rowid<? AND NOT EXISTS (SELECT 1 FROM"
+                                + " messages_index_docsize WHERE docid="
+                                + Message.TABLENAME
+                                + ".rowid)")) {
+            for (long start = 0; start <= max; start += MESSAGE_INDEX_BATCH_SIZE) {
+                statement.bindLong(1, start);
+                statement.bindLong(2, start + MESSAGE_INDEX_BATCH_SIZE);
+                statement.execute();
+            }
+        }
+        Log.d(Config.LOGTAG, "completed message index in " + stopwatch.stop());
+    }
+
+    /**
+     * Drops the secondary indexes of the messages table and the triggers keeping the full text
+     * index in sync. Building an index once after a bulk insert is a lot cheaper than maintaining
+     * it row by row. Schema changes are transactional; this has to be called within a transaction
+     * that also calls {@link #resumeMessageIndexes()} before it is marked successful.
+     */
+    public void suspendMessageIndexes() {
+        commitPendingMessages();
+        final SQLiteDatabase db = getWritableDatabase();
+        db.execSQL("DROP TRIGGER IF EXISTS after_message_insert;");
+        db.execSQL("DROP TRIGGER IF EXISTS after_message_update;");
+        db.execSQL("DROP TRIGGER IF EXISTS after_message_delete;");
+        db.execSQL("DROP TRIGGER IF EXISTS after_message_insert_summary;");
+        db.execSQL("DROP TRIGGER IF EXISTS after_message_update_summary;");
+        db.execSQL("DROP TRIGGER IF EXISTS after_message_delete_summary;");
+        db.execSQL("DROP INDEX IF EXISTS message_time_index");
+        db.execSQL("DROP INDEX IF EXISTS message_conversation_time_index");
+        db.execSQL("DROP INDEX IF EXISTS message_deleted_index");
+        db.execSQL("DROP INDEX IF EXISTS message_file_path_index");
+        db.execSQL("DROP INDEX IF EXISTS message_type_index");
+        db.execSQL("DROP INDEX IF EXISTS message_unread_index");
+        db.execSQL("DROP INDEX IF EXISTS message_unsent_index");
+    }
+
+    public void resumeMessageIndexes() {
+        commitPendingMessages();
+        final SQLiteDatabase db = getWritableDatabase();
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        db.execSQL(CREATE_MESSAGE_TIME_INDEX);
+        db.execSQL(CREATE_MESSAGE_CONVERSATION_TIME_INDEX);
+        db.execSQL(CREATE_MESSAGE_DELETED_INDEX);
+        db.execSQL(CREATE_MESSAGE_RELATIVE_FILE_PATH_INDEX);
+        db.execSQL(CREATE_MESSAGE_TYPE_INDEX);
+        db.execSQL(CREATE_MESSAGE_UNREAD_INDEX);
+        db.execSQL(CREATE_MESSAGE_UNSENT_INDEX);
+        db.execSQL(CREATE_MESSAGE_INSERT_TRIGGER);
+        db.execSQL(CREATE_MESSAGE_UPDATE_TRIGGER);
+        db.execSQL(CREATE_MESSAGE_DELETE_TRIGGER);
+        db.execSQL(CREATE_SUMMARY_INSERT_TRIGGER);
+        db.execSQL(CREATE_SUMMARY_UPDATE_TRIGGER);
+        db.execSQL(CREATE_SUMMARY_DELETE_TRIGGER);
+        db.execSQL(COPY_PREEXISTING_ENTRIES);
+        db.execSQL("DELETE FROM " + ConversationSummary.TABLENAME);
+        db.execSQL(COMPUTE_ALL_CONVERSATION_SUMMARIES);
+        Log.d(Config.LOGTAG, "rebuilt message indexes in " + stopwatch.stop());
+    }
+
     public static synchronized DatabaseBackend getInstance(Context context) {
         if (instance == null) {
             instance = new DatabaseBackend(context);
@@ -491,10 +818,12 @@ public class DatabaseBackend extends SQLiteOpenHelper {
                         + Conversation.UUID
                         + ") ON DELETE CASCADE);");
         db.execSQL(CREATE_MESSAGE_TIME_INDEX);
-        db.execSQL(CREATE_MESSAGE_CONVERSATION_INDEX);
+        db.execSQL(CREATE_MESSAGE_CONVERSATION_TIME_INDEX);
         db.execSQL(CREATE_MESSAGE_DELETED_INDEX);
         db.execSQL(CREATE_MESSAGE_RELATIVE_FILE_PATH_INDEX);
         db.execSQL(CREATE_MESSAGE_TYPE_INDEX);
+        db.execSQL(CREATE_MESSAGE_UNREAD_INDEX);
+        db.execSQL(CREATE_MESSAGE_UNSENT_INDEX);
         db.execSQL(CREATE_CONTACTS_STATEMENT);
         db.execSQL(CREATE_SESSIONS_STATEMENT);
         db.execSQL(CREATE_PREKEYS_STATEMENT);
@@ -502,10 +831,19 @@ public class DatabaseBackend extends SQLiteOpenHelper {
         db.execSQL(CREATE_IDENTITIES_STATEMENT);
         db.execSQL(CREATE_PRESENCE_TEMPLATES_STATEMENT);
         db.execSQL(CREATE_RESOLVER_RESULTS_TABLE);
+        db.execSQL(CREATE_RESOLVER_CACHE_TABLE);
+        db.execSQL(CREATE_RESOLVER_CACHE_INDEX);
         db.execSQL(CREATE_MESSAGE_INDEX_TABLE);
         db.execSQL(CREATE_MESSAGE_INSERT_TRIGGER);
         db.execSQL(CREATE_MESSAGE_UPDATE_TRIGGER);
         db.execSQL(CREATE_MESSAGE_DELETE_TRIGGER);
+        db.execSQL(CREATE_CONVERSATION_SUMMARY_TABLE);
+        db.execSQL(CREATE_SUMMARY_INSERT_TRIGGER);
+        db.execSQL(CREATE_SUMMARY_UPDATE_TRIGGER);
+        db.execSQL(CREATE_SUMMARY_DELETE_TRIGGER);
+        db.execSQL(CREATE_MESSAGE_CHANGES_TABLE);
+        db.execSQL(CREATE_MESSAGE_CHANGES_UPDATE_TRIGGER);
+        db.execSQL(CREATE_MESSAGE_CHANGES_DELETE_TRIGGER);
         db.execSQL(CREATE_CAPS_CACHE_TABLE);
         db.execSQL(CREATE_CAPS_CACHE_INDEX_CAPS);
         db.execSQL(CREATE_CAPS_CACHE_INDEX_CAPS2);
@@ -1086,6 +1424,47 @@ public class DatabaseBackend extends SQLiteOpenHelper {
             db.execSQL(CREATE_CAPS_CACHE_INDEX_CAPS);
             db.execSQL(CREATE_CAPS_CACHE_INDEX_CAPS2);
         }
+        if (oldVersion < 55 && newVersion >= 55) {
+            // the composite index covers all lookups by conversation
+            db.execSQL("DROP INDEX IF EXISTS message_conversation_index");
+            db.execSQL(CREATE_MESSAGE_CONVERSATION_TIME_INDEX);
+        }
+        if (oldVersion < 56 && newVersion >= 56) {
+            db.execSQL(CREATE_RESOLVER_CACHE_TABLE);
+            db.execSQL(CREATE_RESOLVER_CACHE_INDEX);
+        }
+        if (oldVersion < 57 && newVersion >= 57) {
+            // recreate with prefix indexes; populated in the background by completeMessagesIndex()
+            db.execSQL("DROP TRIGGER IF EXISTS after_message_insert;");
+            db.execSQL("DROP TRIGGER IF EXISTS after_message_update;");
+            db.execSQL("DROP TRIGGER IF EXISTS after_message_delete;");
+            db.execSQL("DROP TABLE IF EXISTS messages_index;");
+            db.execSQL(CREATE_MESSAGE_INDEX_TABLE);
+            db.execSQL(CREATE_MESSAGE_INSERT_TRIGGER);
+            db.execSQL(CREATE_MESSAGE_UPDATE_TRIGGER);
+            db.execSQL(CREATE_MESSAGE_DELETE_TRIGGER);
+        }
+        if (oldVersion < 58 && newVersion >= 58) {
+            db.execSQL(CREATE_MESSAGE_UNREAD_INDEX);
+            db.execSQL(CREATE_MESSAGE_UNSENT_INDEX);
+        }
+        if (oldVersion < 59 && newVersion >= 59) {
+            // the summary table was added in 58 and extended in 59; it is only built here once
+            db.execSQL("DROP TRIGGER IF EXISTS after_message_insert_summary;");
+            db.execSQL("DROP TRIGGER IF EXISTS after_message_update_summary;");
+            db.execSQL("DROP TRIGGER IF EXISTS after_message_delete_summary;");
+            db.execSQL("DROP TABLE IF EXISTS " + ConversationSummary.TABLENAME);
+            db.execSQL(CREATE_CONVERSATION_SUMMARY_TABLE);
+            db.execSQL(CREATE_SUMMARY_INSERT_TRIGGER);
+            db.execSQL(CREATE_SUMMARY_UPDATE_TRIGGER);
+            db.execSQL(CREATE_SUMMARY_DELETE_TRIGGER);
+            db.execSQL(COMPUTE_ALL_CONVERSATION_SUMMARIES);
+        }
+        if (oldVersion < 60 && newVersion >= 60) {
+            db.execSQL(CREATE_MESSAGE_CHANGES_TABLE);
+            db.execSQL(CREATE_MESSAGE_CHANGES_UPDATE_TRIGGER);
+            db.execSQL(CREATE_MESSAGE_CHANGES_DELETE_TRIGGER);
+        }
     }
 
     private void canonicalizeJids(SQLiteDatabase db) {
@@ -1215,10 +1594,53 @@ public class DatabaseBackend extends SQLiteOpenHelper {
     }
 
     public void createMessage(Message message) {
+        commitPendingMessages();
         SQLiteDatabase db = this.getWritableDatabase();
         db.insert(Message.TABLENAME, null, message.getContentValues());
     }
 
+    /**
+     * Queues the message for insertion. Pending messages are written in a single transaction once
+     * the batch is full or older than {@link #MESSAGE_GROUP_COMMIT_DELAY}, when {@link
+     * #commitPendingMessages()} is called explicitly (end of a MAM query, stream management ack)
+     * or before any other read or write on the messages table.
+     */
+    public void createMessageDeferred(final Message message) {
+        final boolean commit;
+        synchronized (this.pendingMessages) {
+            if (this.pendingMessages.isEmpty()) {
+                this.pendingMessagesSince = SystemClock.elapsedRealtime();
+            }
+            this.pendingMessages.add(message);
+            commit =
+                    this.pendingMessages.size() >= MESSAGE_GROUP_COMMIT_SIZE
+                            || SystemClock.elapsedRealtime() - this.pendingMessagesSince
+                                    >= MESSAGE_GROUP_COMMIT_DELAY;
+        }
+        if (commit) {
+            commitPendingMessages();
+        }
+    }
+
+    public void commitPendingMessages() {
+        synchronized (this.pendingMessages) {
+            if (this.pendingMessages.isEmpty()) {
+                return;
+            }
+            final SQLiteDatabase db = this.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (final Message message : this.pendingMessages) {
+                    db.insert(Message.TABLENAME, null, message.getContentValues());
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            this.pendingMessages.clear();
+        }
+    }
+
     public void createAccount(Account account) {
         SQLiteDatabase db = this.getWritableDatabase();
         db.insert(Account.TABLENAME, null, account.getContentValues());
@@ -1255,6 +1677,70 @@ public class DatabaseBackend extends SQLiteOpenHelper {
         return result;
     }
 
+    public void saveResolverCacheEntry(
+            final String domain, final String network, final ResolverCache.Entry entry) {
+        final SQLiteDatabase db = this.getWritableDatabase();
+        final String where = Resolver.Result.DOMAIN + "=? and " + ResolverCache.NETWORK + "=?";
+        db.beginTransaction();
+        try {
+            db.delete(ResolverCache.TABLENAME, where, new String[] {domain, network});
+            // entries that can no longer be served, not even as stale, are of no use
+            db.delete(
+                    ResolverCache.TABLENAME,
+                    ResolverCache.EXPIRES + "<?",
+                    new String[] {
+                        String.valueOf(System.currentTimeMillis() - ResolverCache.MAX_STALE)
+                    });
+            final List<Resolver.Result> results = entry.results();
+            for (int i = 0; i < results.size(); ++i) {
+                final ContentValues contentValues = results.get(i).toContentValues();
+                contentValues.put(Resolver.Result.DOMAIN, domain);
+                contentValues.put(ResolverCache.NETWORK, network);
+                contentValues.put(ResolverCache.POSITION, i);
+                contentValues.put(ResolverCache.EXPIRES, entry.expires());
+                contentValues.put(ResolverCache.DURATION, entry.duration());
+                db.insert(ResolverCache.TABLENAME, null, contentValues);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public ResolverCache.Entry findResolverCacheEntry(final String domain, final String network) {
+        final SQLiteDatabase db = this.getReadableDatabase();
+        final String where = Resolver.Result.DOMAIN + "=? and " + ResolverCache.NETWORK + "=?";
+        final ImmutableList.Builder<Resolver.Result> results = new ImmutableList.Builder<>();
+        long expires = Long.MAX_VALUE;
+        long duration = 0;
+        try (final Cursor cursor =
+                db.query(
+                        ResolverCache.TABLENAME,
+                        null,
+                        where,
+                        new String[] {domain, network},
+                        null,
+                        null,
+                        ResolverCache.POSITION)) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            final int expiresIndex = cursor.getColumnIndexOrThrow(ResolverCache.EXPIRES);
+            final int durationIndex = cursor.getColumnIndexOrThrow(ResolverCache.DURATION);
+            do {
+                results.add(Resolver.Result.fromCursor(cursor));
+                expires = Math.min(expires, cursor.getLong(expiresIndex));
+                duration = Math.max(duration, cursor.getLong(durationIndex));
+            } while (cursor.moveToNext());
+        } catch (final Exception e) {
+            Log.d(
+                    Config.LOGTAG,
+                    "unable to load resolver cache entry from database " + e.getMessage());
+            return null;
+        }
+        return new ResolverCache.Entry(results.build(), expires, duration);
+    }
+
     public void insertPresenceTemplate(PresenceTemplate template) {
         SQLiteDatabase db = this.getWritableDatabase();
         String whereToDelete = PresenceTemplate.MESSAGE + "=?";
@@ -1325,51 +1811,217 @@ public class DatabaseBackend extends SQLiteOpenHelper {
     }
 
     public ArrayList<Message> getMessages(Conversation conversation, int limit, long timestamp) {
-        ArrayList<Message> list = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor;
         if (timestamp == -1) {
-            String[] selectionArgs = {conversation.getUuid()};
-            cursor =
-                    db.query(
-                            Message.TABLENAME,
-                            null,
-                            Message.CONVERSATION + "=?",
-                            selectionArgs,
-                            null,
-                            null,
-                            Message.TIME_SENT + " DESC",
-                            String.valueOf(limit));
+            return getMessages(
+                    conversation,
+                    limit,
+                    Message.CONVERSATION + "=?",
+                    new String[] {conversation.getUuid()});
         } else {
-            String[] selectionArgs = {conversation.getUuid(), Long.toString(timestamp)};
-            cursor =
+            return getMessages(
+                    conversation,
+                    limit,
+                    Message.CONVERSATION + "=? and " + Message.TIME_SENT + "<?",
+                    new String[] {conversation.getUuid(), Long.toString(timestamp)});
+        }
+    }
+
+    /**
+     * Loads the page of messages preceding the given message. Paging is keyed on (timeSent, rowid)
+     * so that messages sharing the timestamp of the anchor are neither skipped nor loaded twice.
+     */
+    public ArrayList<Message> getMessagesBefore(
+            final Conversation conversation, final int limit, final Message anchor) {
+        final String timestamp = Long.toString(anchor.getTimeSent());
+        return getMessages(
+                conversation,
+                limit,
+                Message.CONVERSATION
+                        + "=? and ("
+                        + Message.TIME_SENT
+                        + "<? or ("
+                        + Message.TIME_SENT
+                        + "=? and rowid<(select rowid from "
+                        + Message.TABLENAME
+                        + " where "
+                        + Message.UUID
+                        + "=?)))",
+                new String[] {conversation.getUuid(), timestamp, timestamp, anchor.getUuid()});
+    }
+
+    private ArrayList<Message> getMessages(
+            final Conversation conversation,
+            final int limit,
+            final String selection,
+            final String[] selectionArgs) {
+        commitPendingMessages();
+        final SQLiteDatabase db = this.getReadableDatabase();
+        final ArrayList<Message> list = new ArrayList<>(limit);
+        try (final Cursor cursor =
+                db.query(
+                        Message.TABLENAME,
+                        null,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        Message.TIME_SENT + " DESC, rowid DESC",
+                        String.valueOf(limit))) {
+            CursorUtils.upgradeCursorWindowSize(cursor);
+            final var columns = Message.ColumnIndexes.of(cursor);
+            while (cursor.moveToNext()) {
+                try {
+                    list.add(Message.fromCursor(cursor, conversation, columns));
+                } catch (final Exception e) {
+                    Log.e(Config.LOGTAG, "unable to restore message", e);
+                }
+            }
+        }
+        Collections.reverse(list);
+        return list;
+    }
+
+    public Map<String, ConversationSummary> getConversationSummaries() {
+        commitPendingMessages();
+        final SQLiteDatabase db = this.getReadableDatabase();
+        final var builder = new ImmutableMap.Builder<String, ConversationSummary>();
+        try (final Cursor cursor =
+                db.query(ConversationSummary.TABLENAME, null, null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                final var summary = ConversationSummary.fromCursor(cursor);
+                builder.put(summary.conversationUuid(), summary);
+            }
+        }
+        return builder.buildKeepingLast();
+    }
+
+    /**
+     * Loads the last message of each of the given conversations with as few queries as possible.
+     *
+     * @return the last messages by conversation
+     */
+    public Map<Conversation, Message> getLastMessages(
+            final Map<String, Conversation> conversationsByLastMessage) {
+        commitPendingMessages();
+        final SQLiteDatabase db = this.getReadableDatabase();
+        final var builder = new ImmutableMap.Builder<Conversation, Message>();
+        // stays below the limit of 999 host parameters of older SQLite versions
+        for (final var uuids : Iterables.partition(conversationsByLastMessage.keySet(), 500)) {
+            final String selection =
+                    Message.UUID
+                            + " IN ("
+                            + Joiner.on(',').join(Collections.nCopies(uuids.size(), "?"))
+                            + ")";
+            try (final Cursor cursor =
                     db.query(
                             Message.TABLENAME,
                             null,
-                            Message.CONVERSATION + "=? and " + Message.TIME_SENT + "<?",
-                            selectionArgs,
+                            selection,
+                            uuids.toArray(new String[0]),
                             null,
                             null,
-                            Message.TIME_SENT + " DESC",
-                            String.valueOf(limit));
-        }
-        CursorUtils.upgradeCursorWindowSize(cursor);
-        while (cursor.moveToNext()) {
-            try {
-                list.add(0, Message.fromCursor(cursor, conversation));
-            } catch (final Exception e) {
-                Log.e(Config.LOGTAG, "unable to restore message", e);
+                            null)) {
+                CursorUtils.upgradeCursorWindowSize(cursor);
+                final var columns = Message.ColumnIndexes.of(cursor);
+                final int uuidColumn = cursor.getColumnIndexOrThrow(Message.UUID);
+                while (cursor.moveToNext()) {
+                    final var conversation =
+                            conversationsByLastMessage.get(cursor.getString(uuidColumn));
+                    if (conversation == null) {
+                        continue;
+                    }
+                    try {
+                        builder.put(
+                                conversation, Message.fromCursor(cursor, conversation, columns));
+                    } catch (final Exception e) {
+                        Log.e(Config.LOGTAG, "unable to restore message", e);
+                    }
+                }
             }
         }
-        cursor.close();
-        return list;
+        return builder.buildKeepingLast();
     }
 
-    public Cursor getMessageSearchCursor(final List<String> term, final String uuid) {
+    /**
+     * Ranks the most recent {@link Config#MAX_SEARCH_CANDIDATES} matches by relevance and picks the
+     * best {@link Config#MAX_SEARCH_RESULTS} among them. Only the index and the messages table are
+     * read here; the full rows are loaded page by page through {@link
+     * #getMessageSearchCursor(List)}.
+     *
+     * @return the rowids of the results in chronological order
+     */
+    public List<Long> searchMessages(final List<String> term, final String uuid) {
+        commitPendingMessages();
         final SQLiteDatabase db = this.getReadableDatabase();
+        final String matchString = FtsUtils.toMatchString(term);
         final StringBuilder SQL = new StringBuilder();
         final String[] selectionArgs;
         SQL.append(
+                "SELECT "
+                        + Message.TABLENAME
+                        + ".rowid,"
+                        + Message.TIME_SENT
+                        + ",matchinfo(messages_index,'"
+                        + FtsUtils.MATCHINFO_FORMAT
+                        + "') FROM "
+                        + Message.TABLENAME
+                        + " JOIN messages_index ON messages_index.rowid=messages.rowid WHERE "
+                        + Message.ENCRYPTION
+                        + " NOT IN("
+                        + Message.ENCRYPTION_AXOLOTL_NOT_FOR_THIS_DEVICE
+                        + ","
+                        + Message.ENCRYPTION_PGP
+                        + ","
+                        + Message.ENCRYPTION_DECRYPTION_FAILED
+                        + ","
+                        + Message.ENCRYPTION_AXOLOTL_FAILED
+                        + ") AND "
+                        + Message.TYPE
+                        + " IN("
+                        + Message.TYPE_TEXT
+                        + ","
+                        + Message.TYPE_PRIVATE
+                        + ") AND messages_index.body MATCH ?");
+        if (uuid == null) {
+            selectionArgs = new String[] {matchString};
+        } else {
+            selectionArgs = new String[] {matchString, uuid};
+            SQL.append(" AND " + Message.TABLENAME + '.' + Message.CONVERSATION + "=?");
+        }
+        SQL.append(
+                " ORDER BY " + Message.TIME_SENT + " DESC limit " + Config.MAX_SEARCH_CANDIDATES);
+        Log.d(Config.LOGTAG, "search term: " + matchString);
+        final List<SearchCandidate> candidates = new ArrayList<>();
+        try (final Cursor cursor = db.rawQuery(SQL.toString(), selectionArgs)) {
+            while (cursor.moveToNext()) {
+                // column 1 of messages_index is the body
+                candidates.add(
+                        new SearchCandidate(
+                                cursor.getLong(0),
+                                cursor.getLong(1),
+                                FtsUtils.bm25(cursor.getBlob(2), 1)));
+            }
+        }
+        final List<SearchCandidate> results =
+                Ordering.natural()
+                        .onResultOf(SearchCandidate::score)
+                        .greatestOf(candidates, Config.MAX_SEARCH_RESULTS);
+        return Ordering.natural()
+                .onResultOf(SearchCandidate::timeSent)
+                .sortedCopy(results)
+                .stream()
+                .map(SearchCandidate::rowId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param rowIds a page of results as returned by {@link #searchMessages(List, String)}
+     * @return the messages along with the conversation they belong to in chronological order
+     */
+    public Cursor getMessageSearchCursor(final List<Long> rowIds) {
+        commitPendingMessages();
+        final SQLiteDatabase db = this.getReadableDatabase();
+        final String SQL =
                 "SELECT "
                         + Message.TABLENAME
                         + ".*,"
@@ -1396,35 +2048,19 @@ public class DatabaseBackend extends SQLiteOpenHelper {
                         + Conversation.TABLENAME
                         + "."
                         + Conversation.UUID
-                        + " JOIN messages_index ON messages_index.rowid=messages.rowid WHERE "
-                        + Message.ENCRYPTION
-                        + " NOT IN("
-                        + Message.ENCRYPTION_AXOLOTL_NOT_FOR_THIS_DEVICE
-                        + ","
-                        + Message.ENCRYPTION_PGP
-                        + ","
-                        + Message.ENCRYPTION_DECRYPTION_FAILED
-                        + ","
-                        + Message.ENCRYPTION_AXOLOTL_FAILED
-                        + ") AND "
-                        + Message.TYPE
-                        + " IN("
-                        + Message.TYPE_TEXT
-                        + ","
-                        + Message.TYPE_PRIVATE
-                        + ") AND messages_index.body MATCH ?");
-        if (uuid == null) {
-            selectionArgs = new String[] {FtsUtils.toMatchString(term)};
-        } else {
-            selectionArgs = new String[] {FtsUtils.toMatchString(term), uuid};
-            SQL.append(" AND " + Conversation.TABLENAME + '.' + Conversation.UUID + "=?");
-        }
-        SQL.append(" ORDER BY " + Message.TIME_SENT + " DESC limit " + Config.MAX_SEARCH_RESULTS);
-        Log.d(Config.LOGTAG, "search term: " + FtsUtils.toMatchString(term));
-        return db.rawQuery(SQL.toString(), selectionArgs);
+                        + " WHERE "
+                        + Message.TABLENAME
+                        + ".rowid IN("
+                        + Joiner.on(',').join(rowIds)
+                        + ") ORDER BY "
+                        + Message.TIME_SENT;
+        return db.rawQuery(SQL, null);
     }
 
+    private record SearchCandidate(long rowId, long timeSent, double score) {}
+
     public List<String> markFileAsDeleted(final File file, final boolean internal) {
+        commitPendingMessages();
         SQLiteDatabase db = this.getReadableDatabase();
         String selection;
         String[] selectionArgs;
@@ -1470,6 +2106,7 @@ public class DatabaseBackend extends SQLiteOpenHelper {
     }
 
     public void markFileAsDeleted(List<String> uuids) {
+        commitPendingMessages();
         SQLiteDatabase db = this.getReadableDatabase();
         final ContentValues contentValues = new ContentValues();
         final String where = Message.UUID + "=?";
@@ -1483,6 +2120,7 @@ public class DatabaseBackend extends SQLiteOpenHelper {
     }
 
     public void markFilesAsChanged(List<FilePathInfo> files) {
+        commitPendingMessages();
         SQLiteDatabase db = this.getReadableDatabase();
         final String where = Message.UUID + "=?";
         db.beginTransaction();
@@ -1496,6 +2134,7 @@ public class DatabaseBackend extends SQLiteOpenHelper {
     }
 
     public List<FilePathInfo> getFilePathInfo() {
+        commitPendingMessages();
         final SQLiteDatabase db = this.getReadableDatabase();
         final Cursor cursor =
                 db.query(
@@ -1519,6 +2158,7 @@ public class DatabaseBackend extends SQLiteOpenHelper {
     }
 
     public List<FilePath> getRelativeFilePaths(String account, Jid jid, int limit) {
+        commitPendingMessages();
         SQLiteDatabase db = this.getReadableDatabase();
         final String SQL =
                 "select uuid,relativeFilePath from messages where type in (1,2,5) and deleted=0 and"
@@ -1539,6 +2179,7 @@ public class DatabaseBackend extends SQLiteOpenHelper {
 
     public Message getMessageWithServerMsgId(
             final Conversation conversation, final String messageId) {
+        commitPendingMessages();
         final var db = this.getReadableDatabase();
         final String sql =
                 "select * from messages where conversationUuid=? and serverMsgId=? LIMIT 1";
@@ -1559,6 +2200,7 @@ public class DatabaseBackend extends SQLiteOpenHelper {
 
     public Message getMessageWithUuidOrRemoteId(
             final Conversation conversation, final String messageId) {
+        commitPendingMessages();
         final var db = this.getReadableDatabase();
         final String sql =
                 "select * from messages where conversationUuid=? and (uuid=? OR remoteMsgId=?)"
@@ -1807,6 +2449,7 @@ public class DatabaseBackend extends SQLiteOpenHelper {
     }
 
     public boolean updateMessage(final Message message, final boolean includeBody) {
+        commitPendingMessages();
         final var db = this.getWritableDatabase();
         final String[] args = {message.getUuid()};
         final var contentValues = message.getContentValues();
@@ -1819,6 +2462,7 @@ public class DatabaseBackend extends SQLiteOpenHelper {
     }
 
     public boolean updateMessage(final Message message, final String uuid) {
+        commitPendingMessages();
         final var db = this.getWritableDatabase();
         final String[] args = {uuid};
         final int rows =
@@ -1827,6 +2471,7 @@ public class DatabaseBackend extends SQLiteOpenHelper {
     }
 
     public boolean deleteMessage(String uuid) {
+        commitPendingMessages();
         final var db = this.getWritableDatabase();
         final String[] args = {uuid};
         final int rows = db.delete(Message.TABLENAME, Account.UUID + "=?", args);
@@ -1850,33 +2495,88 @@ public class DatabaseBackend extends SQLiteOpenHelper {
         return builder.buildKeepingLast();
     }
 
+    private static String insertContactStatement(final List<String> columns) {
+        return "INSERT OR REPLACE INTO "
+                + Contact.TABLENAME
+                + "("
+                + Joiner.on(',').join(columns)
+                + ") VALUES ("
+                + Joiner.on(',').join(Collections.nCopies(columns.size(), "?"))
+                + ")";
+    }
+
+    /**
+     * Writes the changed contacts of a roster (as produced by {@link Contact#getContentValues()})
+     * and deletes the rows of contacts that no longer need to be stored. The roster version is
+     * written in the same transaction so that it never gets ahead of the stored contacts.
+     */
     public void writeRoster(
-            final Account account, final String version, final List<Contact> contacts) {
+            final Account account,
+            final String version,
+            final Collection<ContentValues> changed,
+            final Collection<Jid> removed) {
         final long start = SystemClock.elapsedRealtime();
         final SQLiteDatabase db = this.getWritableDatabase();
+        // one insert statement per set of columns; in practice all contacts have the same
+        final Map<List<String>, SQLiteStatement> inserts = new HashMap<>();
         db.beginTransaction();
-        for (final Contact contact : contacts) {
-            if (contact.getOption(Contact.Options.IN_ROSTER)
-                    || contact.hasAvatarOrPresenceName()
-                    || contact.getOption(Contact.Options.SYNCED_VIA_OTHER)) {
-                db.insert(Contact.TABLENAME, null, contact.getContentValues());
-            } else {
-                String where = Contact.ACCOUNT + "=? AND " + Contact.JID + "=?";
-                String[] whereArgs = {account.getUuid(), contact.getAddress().toString()};
-                db.delete(Contact.TABLENAME, where, whereArgs);
+        try (final SQLiteStatement delete =
+                        db.compileStatement(
+                                "DELETE FROM "
+                                        + Contact.TABLENAME
+                                        + " WHERE "
+                                        + Contact.ACCOUNT
+                                        + "=? AND "
+                                        + Contact.JID
+                                        + "=?")) {
+            for (final ContentValues contentValues : changed) {
+                final List<String> columns =
+                        Ordering.natural().sortedCopy(contentValues.keySet());
+                SQLiteStatement insert = inserts.get(columns);
+                if (insert == null) {
+                    insert = db.compileStatement(insertContactStatement(columns));
+                    inserts.put(columns, insert);
+                }
+                insert.clearBindings();
+                for (int i = 0; i < columns.size(); ++i) {
+                    DatabaseUtils.bindObjectToProgram(
+                            insert, i + 1, contentValues.get(columns.get(i)));
+                }
+                insert.executeInsert();
+            }
+            for (final Jid address : removed) {
+                delete.bindString(1, account.getUuid());
+                delete.bindString(2, address.toString());
+                delete.executeUpdateDelete();
+            }
+            account.setRosterVersion(version);
+            db.update(
+                    Account.TABLENAME,
+                    account.getContentValues(),
+                    Account.UUID + "=?",
+                    new String[] {account.getUuid()});
+            db.setTransactionSuccessful();
+        } finally {
+            for (final SQLiteStatement insert : inserts.values()) {
+                insert.close();
             }
+            db.endTransaction();
         }
-        db.setTransactionSuccessful();
-        db.endTransaction();
-        account.setRosterVersion(version);
-        updateAccount(account);
         long duration = SystemClock.elapsedRealtime() - start;
         Log.d(
                 Config.LOGTAG,
-                account.getJid().asBareJid() + ": persisted roster in " + duration + "ms");
+                account.getJid().asBareJid()
+                        + ": persisted roster ("
+                        + changed.size()
+                        + " changed, "
+                        + removed.size()
+                        + " removed) in "
+                        + duration
+                        + "ms");
     }
 
     public void deleteMessagesInConversation(Conversation conversation) {
+        commitPendingMessages();
         long start = SystemClock.elapsedRealtime();
         final SQLiteDatabase db = this.getWritableDatabase();
         db.beginTransaction();
@@ -1895,7 +2595,25 @@ public class DatabaseBackend extends SQLiteOpenHelper {
                         + "ms");
     }
 
+    /**
+     * @return the position of the most recent change to a message. Changes after this one are
+     *     found by {@code rowid IN (SELECT messageRowid FROM message_changes WHERE id>?)}
+     */
+    public long getLastMessageChange() {
+        commitPendingMessages();
+        final SQLiteDatabase db = this.getReadableDatabase();
+        return DatabaseUtils.longForQuery(
+                db, "SELECT coalesce(max(id),0) FROM message_changes", null);
+    }
+
+    /** Forgets changes that are covered by the full backups of all accounts. */
+    public void pruneMessageChanges(final long upTo) {
+        final SQLiteDatabase db = this.getWritableDatabase();
+        db.delete("message_changes", "id<=?", new String[] {String.valueOf(upTo)});
+    }
+
     public void expireOldMessages(long timestamp) {
+        commitPendingMessages();
         final String[] args = {String.valueOf(timestamp)};
         SQLiteDatabase db = this.getReadableDatabase();
         db.beginTransaction();
@@ -1905,6 +2623,7 @@ public class DatabaseBackend extends SQLiteOpenHelper {
     }
 
     public MamReference getLastMessageReceived(Account account) {
+        commitPendingMessages();
         Cursor cursor = null;
         try {
             SQLiteDatabase db = this.getReadableDatabase();
@@ -1933,6 +2652,7 @@ public class DatabaseBackend extends SQLiteOpenHelper {
     }
 
     public long getLastTimeFingerprintUsed(Account account, String fingerprint) {
+        commitPendingMessages();
         String SQL =
                 "select messages.timeSent from accounts join conversations on"
                         + " accounts.uuid=conversations.accountUuid join messages on"
@@ -1951,6 +2671,7 @@ public class DatabaseBackend extends SQLiteOpenHelper {
     }
 
     public MamReference getLastClearDate(Account account) {
+        commitPendingMessages();
         SQLiteDatabase db = this.getReadableDatabase();
         String[] columns = {Conversation.ATTRIBUTES};
         String selection = Conversation.ACCOUNT + "=?";
@@ -2648,6 +3369,7 @@ public class DatabaseBackend extends SQLiteOpenHelper {
     }
 
     public List<ShortcutService.FrequentContact> getFrequentContacts(final int days) {
+        commitPendingMessages();
         final var db = this.getReadableDatabase();
         final String SQL =
                 "select "
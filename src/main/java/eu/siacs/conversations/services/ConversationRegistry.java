@@ -0,0 +1,107 @@
+package eu.siacs.conversations.services;
+
+import com.google.common.collect.ImmutableList;
+import eu.siacs.conversations.entities.Account;
+import eu.siacs.conversations.entities.Contact;
+import eu.siacs.conversations.entities.Conversation;
+import eu.siacs.conversations.xmpp.Jid;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indexes the open conversations of {@link XmppConnectionService} by uuid and by bare address so
+ * that routing an incoming stanza to its conversation does not require a scan over all open
+ * conversations. Lookups are lock free; modifications are expected to happen while holding the
+ * lock on the list of conversations, which remains the source of truth for iteration.
+ */
+final class ConversationRegistry {
+
+    private final Map<String, Conversation> byUuid = new ConcurrentHashMap<>();
+    // bare jid -> conversations (one per account) in the order they were opened
+    private final Map<Jid, List<Conversation>> byAddress = new ConcurrentHashMap<>();
+
+    synchronized void add(final Conversation conversation) {
+        byUuid.put(conversation.getUuid(), conversation);
+        final Jid address = conversation.getAddress().asBareJid();
+        final List<Conversation> existing = byAddress.get(address);
+        if (existing == null) {
+            byAddress.put(address, ImmutableList.of(conversation));
+        } else if (!existing.contains(conversation)) {
+            byAddress.put(
+                    address,
+                    new ImmutableList.Builder<Conversation>()
+                            .addAll(existing)
+                            .add(conversation)
+                            .build());
+        }
+    }
+
+    synchronized void addAll(final Collection<Conversation> conversations) {
+        for (final Conversation conversation : conversations) {
+            add(conversation);
+        }
+    }
+
+    synchronized void remove(final Conversation conversation) {
+        byUuid.remove(conversation.getUuid(), conversation);
+        final Jid address = conversation.getAddress().asBareJid();
+        final List<Conversation> existing = byAddress.get(address);
+        if (existing == null || !existing.contains(conversation)) {
+            return;
+        }
+        final ImmutableList.Builder<Conversation> builder = new ImmutableList.Builder<>();
+        for (final Conversation c : existing) {
+            if (c != conversation) {
+                builder.add(c);
+            }
+        }
+        final List<Conversation> remaining = builder.build();
+        if (remaining.isEmpty()) {
+            byAddress.remove(address);
+        } else {
+            byAddress.put(address, remaining);
+        }
+    }
+
+    synchronized void clear() {
+        byUuid.clear();
+        byAddress.clear();
+    }
+
+    Conversation get(final String uuid) {
+        return uuid == null ? null : byUuid.get(uuid);
+    }
+
+    boolean contains(final Conversation conversation) {
+        return byUuid.get(conversation.getUuid()) == conversation;
+    }
+
+    /**
+     * @return all open conversations with the given (bare) address across all accounts
+     */
+    List<Conversation> get(final Jid address) {
+        final List<Conversation> conversations = byAddress.get(address.asBareJid());
+        return conversations == null ? Collections.emptyList() : conversations;
+    }
+
+    Conversation get(final Account account, final Jid address) {
+        for (final Conversation conversation : get(address)) {
+            if (account == null || conversation.getAccount() == account) {
+                return conversation;
+            }
+        }
+        return null;
+    }
+
+    Conversation get(final Contact contact) {
+        for (final Conversation conversation : get(contact.getAddress())) {
+            if (conversation.getContact() == contact) {
+                return conversation;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,154 @@
+package eu.siacs.conversations.services;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+import eu.siacs.conversations.entities.Conversation;
+import eu.siacs.conversations.xmpp.OnUpdateBlocklist;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Coalesces requests to update the UI. Parsing a MAM catch up or a busy group chat can request
+ * hundreds of updates per second; the listeners however only need to hear about it at most once
+ * per frame. Requests are collected and dispatched on the main thread.
+ */
+public final class InterfaceUpdateBus {
+
+    private static final long FRAME_INTERVAL = 16; // in milliseconds
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Dispatcher dispatcher;
+
+    private final Set<Conversation> changedConversations = new HashSet<>();
+    private final Set<OnUpdateBlocklist.Status> blocklistStatus =
+            EnumSet.noneOf(OnUpdateBlocklist.Status.class);
+    private boolean conversationUpdate = false;
+    private boolean unspecificConversationUpdate = false;
+    private boolean rosterUpdate = false;
+    private boolean accountUpdate = false;
+    private boolean scheduled = false;
+    private long lastDispatch = 0;
+
+    private long requested = 0;
+    private long dispatched = 0;
+
+    InterfaceUpdateBus(final Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    synchronized void requestConversationUpdate() {
+        this.conversationUpdate = true;
+        this.unspecificConversationUpdate = true;
+        this.changedConversations.clear();
+        schedule();
+    }
+
+    synchronized void requestConversationUpdate(final Conversation conversation) {
+        this.conversationUpdate = true;
+        if (!this.unspecificConversationUpdate) {
+            this.changedConversations.add(conversation);
+        }
+        schedule();
+    }
+
+    synchronized void requestRosterUpdate() {
+        this.rosterUpdate = true;
+        schedule();
+    }
+
+    synchronized void requestAccountUpdate() {
+        this.accountUpdate = true;
+        schedule();
+    }
+
+    synchronized void requestBlocklistUpdate(final OnUpdateBlocklist.Status status) {
+        this.blocklistStatus.add(status);
+        schedule();
+    }
+
+    synchronized Statistics getStatistics() {
+        return new Statistics(requested, dispatched);
+    }
+
+    private void schedule() {
+        this.requested++;
+        if (this.scheduled) {
+            return;
+        }
+        this.scheduled = true;
+        final long delay = lastDispatch + FRAME_INTERVAL - SystemClock.elapsedRealtime();
+        this.handler.postDelayed(this::dispatch, Math.max(0, delay));
+    }
+
+    private void dispatch() {
+        final boolean conversations;
+        final Set<Conversation> changed;
+        final boolean roster;
+        final boolean account;
+        final Set<OnUpdateBlocklist.Status> blocklist;
+        synchronized (this) {
+            conversations = this.conversationUpdate;
+            changed =
+                    this.unspecificConversationUpdate
+                            ? Collections.emptySet()
+                            : ImmutableSet.copyOf(this.changedConversations);
+            roster = this.rosterUpdate;
+            account = this.accountUpdate;
+            blocklist = ImmutableSet.copyOf(this.blocklistStatus);
+            this.conversationUpdate = false;
+            this.unspecificConversationUpdate = false;
+            this.changedConversations.clear();
+            this.rosterUpdate = false;
+            this.accountUpdate = false;
+            this.blocklistStatus.clear();
+            this.scheduled = false;
+            this.lastDispatch = SystemClock.elapsedRealtime();
+            this.dispatched++;
+        }
+        if (conversations) {
+            dispatcher.dispatchConversationUpdate(changed);
+        }
+        if (roster) {
+            dispatcher.dispatchRosterUpdate();
+        }
+        if (account) {
+            dispatcher.dispatchAccountUpdate();
+        }
+        for (final OnUpdateBlocklist.Status status : blocklist) {
+            dispatcher.dispatchBlocklistUpdate(status);
+        }
+    }
+
+    interface Dispatcher {
+
+        /**
+         * @param changed the conversations that have changed or an empty set if the update was not
+         *     specific to any conversation
+         */
+        void dispatchConversationUpdate(Set<Conversation> changed);
+
+        void dispatchRosterUpdate();
+
+        void dispatchAccountUpdate();
+
+        void dispatchBlocklistUpdate(OnUpdateBlocklist.Status status);
+    }
+
+    public record Statistics(long requested, long dispatched) {
+
+        @Override
+        @NonNull
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("requested", requested)
+                    .add("dispatched", dispatched)
+                    .toString();
+        }
+    }
+}
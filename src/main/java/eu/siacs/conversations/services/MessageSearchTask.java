@@ -33,6 +33,8 @@ import android.database.Cursor;
 import android.os.SystemClock;
 import android.util.Log;
 
+import com.google.common.collect.Lists;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -84,56 +86,52 @@ public class MessageSearchTask implements Runnable, Cancellable {
 	@Override
 	public void run() {
 		long startTimestamp = SystemClock.elapsedRealtime();
-		Cursor cursor = null;
 		try {
 			final HashMap<String, Conversational> conversationCache = new HashMap<>();
 			final List<Message> result = new ArrayList<>();
-			cursor = xmppConnectionService.databaseBackend.getMessageSearchCursor(term, uuid);
+			final List<Long> rowIds = xmppConnectionService.databaseBackend.searchMessages(term, uuid);
 			long dbTimer = SystemClock.elapsedRealtime();
-			if (isCancelled) {
-				Log.d(Config.LOGTAG, "canceled search task");
-				return;
-			}
-			if (cursor != null && cursor.getCount() > 0) {
-				cursor.moveToLast();
-				final int indexBody = cursor.getColumnIndex(Message.BODY);
-				final int indexOob = cursor.getColumnIndex(Message.OOB);
-				final int indexConversation = cursor.getColumnIndex(Message.CONVERSATION);
-				final int indexAccount = cursor.getColumnIndex(Conversation.ACCOUNT);
-				final int indexContact = cursor.getColumnIndex(Conversation.CONTACTJID);
-				final int indexMode = cursor.getColumnIndex(Conversation.MODE);
-				do {
-					if (isCancelled) {
-						Log.d(Config.LOGTAG, "canceled search task");
-						return;
-					}
-					final String body = cursor.getString(indexBody);
-					final boolean oob = cursor.getInt(indexOob) > 0;
-					if (MessageUtils.treatAsDownloadable(body,oob)) {
-						continue;
-					}
-					final String conversationUuid = cursor.getString(indexConversation);
-					Conversational conversation = conversationCache.get(conversationUuid);
-					if (conversation == null) {
-						String accountUuid = cursor.getString(indexAccount);
-						String contactJid = cursor.getString(indexContact);
-						int mode = cursor.getInt(indexMode);
-						conversation = findOrGenerateStub(conversationUuid, accountUuid, contactJid, mode);
-						conversationCache.put(conversationUuid, conversation);
-					}
-					Message message = IndividualMessage.fromCursor(cursor, conversation);
-					result.add(message);
-				} while (cursor.moveToPrevious());
+			for (final List<Long> page : Lists.partition(rowIds, Config.PAGE_SIZE)) {
+				if (isCancelled) {
+					Log.d(Config.LOGTAG, "canceled search task");
+					return;
+				}
+				try (final Cursor cursor = xmppConnectionService.databaseBackend.getMessageSearchCursor(page)) {
+					addMessages(cursor, conversationCache, result);
+				}
 			}
 			long stopTimestamp = SystemClock.elapsedRealtime();
 			Log.d(Config.LOGTAG, "found " + result.size() + " messages in " + (stopTimestamp - startTimestamp) + "ms"+ " (db was "+(dbTimer - startTimestamp)+"ms)");
 			onSearchResultsAvailable.onSearchResultsAvailable(term, result);
 		} catch (Exception e) {
 			Log.d(Config.LOGTAG, "exception while searching ", e);
-		} finally {
-			if (cursor != null) {
-				cursor.close();
+		}
+	}
+
+	private void addMessages(final Cursor cursor, final HashMap<String, Conversational> conversationCache, final List<Message> result) throws Exception {
+		final int indexBody = cursor.getColumnIndex(Message.BODY);
+		final int indexOob = cursor.getColumnIndex(Message.OOB);
+		final int indexConversation = cursor.getColumnIndex(Message.CONVERSATION);
+		final int indexAccount = cursor.getColumnIndex(Conversation.ACCOUNT);
+		final int indexContact = cursor.getColumnIndex(Conversation.CONTACTJID);
+		final int indexMode = cursor.getColumnIndex(Conversation.MODE);
+		while (cursor.moveToNext()) {
+			final String body = cursor.getString(indexBody);
+			final boolean oob = cursor.getInt(indexOob) > 0;
+			if (MessageUtils.treatAsDownloadable(body,oob)) {
+				continue;
+			}
+			final String conversationUuid = cursor.getString(indexConversation);
+			Conversational conversation = conversationCache.get(conversationUuid);
+			if (conversation == null) {
+				String accountUuid = cursor.getString(indexAccount);
+				String contactJid = cursor.getString(indexContact);
+				int mode = cursor.getInt(indexMode);
+				conversation = findOrGenerateStub(conversationUuid, accountUuid, contactJid, mode);
+				conversationCache.put(conversationUuid, conversation);
 			}
+			Message message = IndividualMessage.fromCursor(cursor, conversation);
+			result.add(message);
 		}
 	}
 
@@ -148,8 +148,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -218,6 +222,41 @@ public class XmppConnectionService extends Service {
             new SerialSingleThreadExecutor("NotificationExecutor");
     private final IBinder mBinder = new XmppConnectionBinder();
     private final List<Conversation> conversations = new CopyOnWriteArrayList<>();
+    private final ConversationRegistry conversationRegistry = new ConversationRegistry();
+    private final InterfaceUpdateBus interfaceUpdateBus =
+            new InterfaceUpdateBus(
+                    new InterfaceUpdateBus.Dispatcher() {
+                        @Override
+                        public void dispatchConversationUpdate(final Set<Conversation> changed) {
+                            for (final OnConversationUpdate listener :
+                                    threadSafeList(mOnConversationUpdates)) {
+                                listener.onConversationUpdate(changed);
+                            }
+                        }
+
+                        @Override
+                        public void dispatchRosterUpdate() {
+                            for (final OnRosterUpdate listener : threadSafeList(mOnRosterUpdates)) {
+                                listener.onRosterUpdate();
+                            }
+                        }
+
+                        @Override
+                        public void dispatchAccountUpdate() {
+                            for (final OnAccountUpdate listener :
+                                    threadSafeList(mOnAccountUpdates)) {
+                                listener.onAccountUpdate();
+                            }
+                        }
+
+                        @Override
+                        public void dispatchBlocklistUpdate(final OnUpdateBlocklist.Status status) {
+                            for (final OnUpdateBlocklist listener :
+                                    threadSafeList(mOnUpdateBlocklist)) {
+                                listener.OnUpdateBlocklist(status);
+                            }
+                        }
+                    });
     private final IqGenerator mIqGenerator = new IqGenerator(this);
     public final HashSet<Jid> mLowPingTimeoutMode = new HashSet<>();
     public DatabaseBackend databaseBackend;
@@ -441,7 +480,10 @@ public class XmppConnectionService extends Service {
     }
 
     public Conversation find(final Account account, final Jid jid) {
-        return find(getConversations(), account, jid);
+        if (jid == null) {
+            return null;
+        }
+        return conversationRegistry.get(account, jid);
     }
 
     public void search(
@@ -1438,6 +1480,7 @@ public class XmppConnectionService extends Service {
             }
             XmppConnection.RECONNNECTION_EXECUTOR.execute(() -> disconnect(account, false));
         }
+        Log.d(Config.LOGTAG, "interface updates " + this.interfaceUpdateBus.getStatistics());
         if (stop || activeAccounts == 0) {
             Log.d(Config.LOGTAG, "good bye");
             stopSelf();
@@ -1796,6 +1839,12 @@ public class XmppConnectionService extends Service {
                     iterator.remove();
                 }
             }
+            this.conversationRegistry.addAll(this.conversations);
+            for (final Conversation conversation : this.conversations) {
+                // until restoreMessages() has run. conversations opened earlier might be hydrated
+                // before that; restoreMessages() tops those up and still processes them
+                conversation.messagesHydrated.set(false);
+            }
             long diffConversationsRestore =
                     SystemClock.elapsedRealtime() - startTimeConversationsRestore;
             Log.d(
@@ -1805,6 +1854,8 @@ public class XmppConnectionService extends Service {
                     () -> {
                         if (DatabaseBackend.requiresMessageIndexRebuild()) {
                             DatabaseBackend.getInstance(this).rebuildMessagesIndex();
+                        } else {
+                            databaseBackend.completeMessagesIndex();
                         }
                         final long deletionDate = getAutomaticMessageDeletionDate();
                         mLastExpiryRun.set(SystemClock.elapsedRealtime());
@@ -1825,6 +1876,7 @@ public class XmppConnectionService extends Service {
                         final long startMessageRestore = SystemClock.elapsedRealtime();
                         final Conversation quickLoad = QuickLoader.get(this.conversations);
                         if (quickLoad != null) {
+                            quickLoad.messagesHydrated.set(true);
                             restoreMessages(quickLoad);
                             updateConversationUi();
                             final long diffMessageRestore =
@@ -1837,11 +1889,49 @@ public class XmppConnectionService extends Service {
                                             + diffMessageRestore
                                             + "ms");
                         }
-                        for (Conversation conversation : this.conversations) {
-                            if (quickLoad != conversation) {
+                        final var summaries = databaseBackend.getConversationSummaries();
+                        final var conversationsByLastMessage = new HashMap<String, Conversation>();
+                        for (final Conversation conversation : this.conversations) {
+                            final var summary = summaries.get(conversation.getUuid());
+                            if (summary != null) {
+                                // MAM catch up and MUC joins must not start from the last
+                                // message that happens to be loaded
+                                conversation.setLastMessageTransmittedFromSummary(
+                                        summary.lastTransmitted());
+                            }
+                            if (quickLoad == conversation) {
+                                continue;
+                            }
+                            if (summary != null && !summary.requiresMessages()) {
+                                conversationsByLastMessage.put(
+                                        summary.lastMessageUuid(), conversation);
+                            } else {
+                                // the conversation might have been hydrated already if it was
+                                // opened in the meantime; unsent and unread messages still need
+                                // to be processed
+                                conversation.messagesHydrated.set(true);
                                 restoreMessages(conversation);
                             }
                         }
+                        // the overview only needs the last message of conversations that have
+                        // neither unread nor unsent messages
+                        for (final var lastMessage :
+                                databaseBackend
+                                        .getLastMessages(conversationsByLastMessage)
+                                        .entrySet()) {
+                            final var conversation = lastMessage.getKey();
+                            synchronized (conversation.messagesHydrated) {
+                                if (conversation.countMessages() == 0) {
+                                    conversation.addAll(
+                                            0, Collections.singletonList(lastMessage.getValue()));
+                                }
+                            }
+                        }
+                        Log.d(
+                                Config.LOGTAG,
+                                "restored "
+                                        + conversationsByLastMessage.size()
+                                        + " conversations with their last message only");
                         mNotificationService.finishBacklog();
                         restoredFromDatabaseLatch.countDown();
                         final long diffMessageRestore =
@@ -1857,12 +1947,53 @@ public class XmppConnectionService extends Service {
     }
 
     private void restoreMessages(Conversation conversation) {
-        conversation.addAll(0, databaseBackend.getMessages(conversation, Config.PAGE_SIZE));
+        loadFirstPage(conversation);
         conversation.findUnsentTextMessages(
                 message -> markMessage(message, Message.STATUS_WAITING));
         conversation.findUnreadMessagesAndCalls(mNotificationService::pushFromBacklog);
     }
 
+    /**
+     * Loads the first page of a conversation that has been restored with its last message only.
+     * Blocks on the database; for stanza processing that might refer to older messages.
+     */
+    public void hydrateMessages(final Conversation conversation) {
+        if (conversation.messagesHydrated.compareAndSet(false, true)) {
+            loadFirstPage(conversation);
+        }
+    }
+
+    public void hydrateMessagesAsync(final Conversation conversation) {
+        if (conversation.messagesHydrated.compareAndSet(false, true)) {
+            mDatabaseReaderExecutor.execute(
+                    () -> {
+                        loadFirstPage(conversation);
+                        updateConversationUi();
+                    });
+        }
+    }
+
+    /**
+     * Tops up the loaded messages to a full page. Safe to call more than once; restoring and
+     * hydrating the same conversation from different threads must not load the same page twice.
+     */
+    private void loadFirstPage(final Conversation conversation) {
+        synchronized (conversation.messagesHydrated) {
+            final int missing = Config.PAGE_SIZE - conversation.countMessages();
+            if (missing <= 0) {
+                return;
+            }
+            final Message oldest = conversation.getOldestMessage();
+            final List<Message> messages;
+            if (oldest == null) {
+                messages = databaseBackend.getMessages(conversation, Config.PAGE_SIZE);
+            } else {
+                messages = databaseBackend.getMessagesBefore(conversation, missing, oldest);
+            }
+            conversation.addAll(0, messages);
+        }
+    }
+
     public void loadPhoneContacts() {
         mContactMergerExecutor.execute(
                 () -> {
@@ -1953,51 +2084,78 @@ public class XmppConnectionService extends Service {
 
     public void populateWithOrderedConversations(
             final List<Conversation> list, final boolean includeNoFileUpload, final boolean sort) {
-        final List<String> orderedUuids;
-        if (sort) {
-            orderedUuids = null;
-        } else {
-            orderedUuids = new ArrayList<>();
-            for (Conversation conversation : list) {
-                orderedUuids.add(conversation.getUuid());
-            }
-        }
-        list.clear();
+        final Set<Conversation> open = new LinkedHashSet<>();
         if (includeNoFileUpload) {
-            list.addAll(getConversations());
+            open.addAll(getConversations());
         } else {
             for (Conversation conversation : getConversations()) {
                 if (conversation.getMode() == Conversation.MODE_SINGLE
                         || (conversation.getAccount().httpUploadAvailable()
                                 && conversation.getMucOptions().participating())) {
-                    list.add(conversation);
+                    open.add(conversation);
                 }
             }
         }
-        try {
-            if (orderedUuids != null) {
-                Collections.sort(
-                        list,
-                        (a, b) -> {
-                            final int indexA = orderedUuids.indexOf(a.getUuid());
-                            final int indexB = orderedUuids.indexOf(b.getUuid());
-                            if (indexA == -1 || indexB == -1 || indexA == indexB) {
-                                return a.compareTo(b);
-                            }
-                            return indexA - indexB;
-                        });
+        // start out with the previous order. conversations that are still open keep their
+        // relative position and only the ones that changed have to move
+        final List<Conversation> previous = new ArrayList<>(list);
+        list.clear();
+        for (final Conversation conversation : previous) {
+            if (open.remove(conversation)) {
+                list.add(conversation);
+            }
+        }
+        final Map<Conversation, Conversation.SortKey> sortKeys = new IdentityHashMap<>();
+        final Comparator<Conversation> comparator =
+                (a, b) -> sortKey(sortKeys, a).compareTo(sortKey(sortKeys, b));
+        if (sort) {
+            list.addAll(open);
+            // the list is mostly sorted already which TimSort handles in close to linear time
+            Collections.sort(list, comparator);
+        } else if (!open.isEmpty()) {
+            final List<Conversation> added = new ArrayList<>(open);
+            Collections.sort(added, comparator);
+            mergeInto(list, added, comparator);
+        }
+    }
+
+    private static Conversation.SortKey sortKey(
+            final Map<Conversation, Conversation.SortKey> sortKeys,
+            final Conversation conversation) {
+        final Conversation.SortKey cached = sortKeys.get(conversation);
+        if (cached != null) {
+            return cached;
+        }
+        final Conversation.SortKey sortKey = conversation.getSortKey();
+        sortKeys.put(conversation, sortKey);
+        return sortKey;
+    }
+
+    /** Inserts the (sorted) additions into list without reordering the existing entries. */
+    private static void mergeInto(
+            final List<Conversation> list,
+            final List<Conversation> additions,
+            final Comparator<Conversation> comparator) {
+        final List<Conversation> existing = new ArrayList<>(list);
+        list.clear();
+        int i = 0;
+        int j = 0;
+        while (i < existing.size() || j < additions.size()) {
+            if (j >= additions.size()
+                    || (i < existing.size()
+                            && comparator.compare(existing.get(i), additions.get(j)) <= 0)) {
+                list.add(existing.get(i++));
             } else {
-                Collections.sort(list);
+                list.add(additions.get(j++));
             }
-        } catch (IllegalArgumentException e) {
-            // ignore
         }
     }
 
     public void loadMoreMessages(
             final Conversation conversation,
-            final long timestamp,
+            final Message oldest,
             final OnMoreMessagesLoaded callback) {
+        final long timestamp = oldest.getTimeSent();
         final var connection = conversation.getAccount().getXmppConnection();
         if (connection
                 .getManager(MessageArchiveManager.class)
@@ -2016,7 +2174,7 @@ public class XmppConnectionService extends Service {
                 () -> {
                     final Account account = conversation.getAccount();
                     List<Message> messages =
-                            databaseBackend.getMessages(conversation, 50, timestamp);
+                            databaseBackend.getMessagesBefore(conversation, 50, oldest);
                     if (messages.size() > 0) {
                         conversation.addAll(0, messages);
                         callback.onMoreMessagesLoaded(messages.size(), conversation);
@@ -2059,12 +2217,10 @@ public class XmppConnectionService extends Service {
     }
 
     public Conversation find(final Contact contact) {
-        for (final Conversation conversation : this.conversations) {
-            if (conversation.getContact() == contact) {
-                return conversation;
-            }
+        if (contact == null) {
+            return null;
         }
-        return null;
+        return conversationRegistry.get(contact);
     }
 
     public Conversation find(
@@ -2082,14 +2238,7 @@ public class XmppConnectionService extends Service {
     }
 
     public boolean isConversationStillOpen(final Conversation conversation) {
-        synchronized (this.conversations) {
-            for (Conversation current : this.conversations) {
-                if (current == conversation) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return conversationRegistry.contains(conversation);
     }
 
     public Conversation findOrCreateConversation(
@@ -2156,6 +2305,7 @@ public class XmppConnectionService extends Service {
                 postProcessConversation(conversation, loadMessagesFromDb, joinAfterCreate, query);
             }
             this.conversations.add(conversation);
+            this.conversationRegistry.add(conversation);
             updateConversationUi();
             return conversation;
         }
@@ -2187,7 +2337,10 @@ public class XmppConnectionService extends Service {
                                 loadMessagesFromDb,
                                 existing.getMode() == Conversational.MODE_MULTI,
                                 null));
-        this.conversations.add(existing);
+        synchronized (this.conversations) {
+            this.conversations.add(existing);
+            this.conversationRegistry.add(existing);
+        }
         if (existing.getMode() == Conversational.MODE_MULTI) {
             account.getXmppConnection()
                     .getManager(BookmarkManager.class)
@@ -2287,6 +2440,7 @@ public class XmppConnectionService extends Service {
             }
             updateConversation(conversation);
             this.conversations.remove(conversation);
+            this.conversationRegistry.remove(conversation);
             updateConversationUi();
         }
     }
@@ -2474,6 +2628,7 @@ public class XmppConnectionService extends Service {
                         }
                     }
                     conversations.remove(conversation);
+                    conversationRegistry.remove(conversation);
                     mNotificationService.clear(conversation);
                 }
             }
@@ -3451,9 +3606,11 @@ public class XmppConnectionService extends Service {
     }
 
     public void updateConversationUi() {
-        for (OnConversationUpdate listener : threadSafeList(this.mOnConversationUpdates)) {
-            listener.onConversationUpdate();
-        }
+        this.interfaceUpdateBus.requestConversationUpdate();
+    }
+
+    public void updateConversationUi(final Conversation conversation) {
+        this.interfaceUpdateBus.requestConversationUpdate(conversation);
     }
 
     public void notifyJingleRtpConnectionUpdate(
@@ -3477,15 +3634,11 @@ public class XmppConnectionService extends Service {
     }
 
     public void updateAccountUi() {
-        for (final OnAccountUpdate listener : threadSafeList(this.mOnAccountUpdates)) {
-            listener.onAccountUpdate();
-        }
+        this.interfaceUpdateBus.requestAccountUpdate();
     }
 
     public void updateRosterUi() {
-        for (OnRosterUpdate listener : threadSafeList(this.mOnRosterUpdates)) {
-            listener.onRosterUpdate();
-        }
+        this.interfaceUpdateBus.requestRosterUpdate();
     }
 
     public boolean displayCaptchaRequest(
@@ -3509,9 +3662,7 @@ public class XmppConnectionService extends Service {
     }
 
     public void updateBlocklistUi(final OnUpdateBlocklist.Status status) {
-        for (OnUpdateBlocklist listener : threadSafeList(this.mOnUpdateBlocklist)) {
-            listener.OnUpdateBlocklist(status);
-        }
+        this.interfaceUpdateBus.requestBlocklistUpdate(status);
     }
 
     public void updateMucRosterUi() {
@@ -3545,19 +3696,17 @@ public class XmppConnectionService extends Service {
     }
 
     public Conversation findConversationByUuid(String uuid) {
-        for (Conversation conversation : getConversations()) {
-            if (conversation.getUuid().equals(uuid)) {
-                return conversation;
-            }
-        }
-        return null;
+        return conversationRegistry.get(uuid);
     }
 
     public Conversation findUniqueConversationByJid(XmppUri xmppUri) {
+        final Jid jid = xmppUri.getJid();
+        if (jid == null || !jid.isBareJid()) {
+            return null;
+        }
         List<Conversation> findings = new ArrayList<>();
-        for (Conversation c : getConversations()) {
+        for (Conversation c : conversationRegistry.get(jid)) {
             if (c.getAccount().isEnabled()
-                    && c.getAddress().asBareJid().equals(xmppUri.getJid())
                     && ((c.getMode() == Conversational.MODE_MULTI)
                             == xmppUri.isAction(XmppUri.ACTION_JOIN))) {
                 findings.add(c);
@@ -3758,9 +3907,8 @@ public class XmppConnectionService extends Service {
     }
 
     public Conversation findFirstMuc(Jid jid) {
-        for (Conversation conversation : getConversations()) {
+        for (Conversation conversation : conversationRegistry.get(jid)) {
             if (conversation.getAccount().isEnabled()
-                    && conversation.getAddress().asBareJid().equals(jid.asBareJid())
                     && conversation.getMode() == Conversation.MODE_MULTI) {
                 return conversation;
             }
@@ -3832,6 +3980,7 @@ public class XmppConnectionService extends Service {
                         && conversation.getMode() == Conversation.MODE_SINGLE
                         && jidMatches) {
                     this.conversations.remove(conversation);
+                    this.conversationRegistry.remove(conversation);
                     markRead(conversation);
                     conversation.setStatus(Conversation.STATUS_ARCHIVED);
                     Log.d(
@@ -3980,6 +4129,14 @@ public class XmppConnectionService extends Service {
 
     public interface OnConversationUpdate {
         void onConversationUpdate();
+
+        /**
+         * @param changed the conversations that have changed or an empty set if the update was not
+         *     specific to any conversation
+         */
+        default void onConversationUpdate(final Set<Conversation> changed) {
+            onConversationUpdate();
+        }
     }
 
     public interface OnJingleRtpConnectionUpdate {
@@ -163,7 +163,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class ConversationFragment extends XmppFragment
         implements EditMessage.KeyboardListener,
                 MessageAdapter.OnContactPictureLongClicked,
-                MessageAdapter.OnContactPictureClicked {
+                MessageAdapter.OnContactPictureClicked,
+                XmppConnectionService.OnConversationUpdate {
 
     // Reactions are disabled in Snikket Android
     // until we have support on other platforms.
@@ -363,17 +364,16 @@ public class ConversationFragment extends XmppFragment
                                 && conversation != null
                                 && conversation.messagesLoaded.compareAndSet(true, false)
                                 && !messageList.isEmpty()) {
-                            long timestamp;
+                            final Message oldest;
                             if (messageList.get(0).getType() == Message.TYPE_STATUS
                                     && messageList.size() >= 2) {
-                                timestamp = messageList.get(1).getTimeSent();
+                                oldest = messageList.get(1);
                             } else {
-                                timestamp = messageList.get(0).getTimeSent();
+                                oldest = messageList.get(0);
                             }
                             requireXmppActivity()
                                     .xmppConnectionService
-                                    .loadMoreMessages(
-                                            conversation, timestamp, onMoreMessagesLoaded);
+                                    .loadMoreMessages(conversation, oldest, onMoreMessagesLoaded);
                         }
                     }
                 }
@@ -2600,6 +2600,8 @@ public class ConversationFragment extends XmppFragment
             return false;
         }
 
+        requireXmppActivity().xmppConnectionService.hydrateMessagesAsync(this.conversation);
+
         stopScrolling();
         Log.d(Config.LOGTAG, "reInit(hasExtras=" + hasExtras + ")");
 
@@ -2933,6 +2935,19 @@ public class ConversationFragment extends XmppFragment
         }
     }
 
+    @Override
+    public void onConversationUpdate() {
+        refresh();
+    }
+
+    @Override
+    public void onConversationUpdate(final Set<Conversation> changed) {
+        // messages arriving in other conversations do not change anything shown here
+        if (changed.isEmpty() || changed.contains(this.conversation)) {
+            refresh();
+        }
+    }
+
     @Override
     public void refresh() {
         if (this.binding == null) {
@@ -82,7 +82,9 @@ import eu.siacs.conversations.utils.XmppUri;
 import eu.siacs.conversations.xmpp.Jid;
 import eu.siacs.conversations.xmpp.OnUpdateBlocklist;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import org.openintents.openpgp.util.OpenPgpApi;
 
 public class ConversationsActivity extends XmppActivity
@@ -143,8 +145,9 @@ public class ConversationsActivity extends XmppActivity
     protected void refreshUiReal() {
         invalidateOptionsMenu();
         invalidateActionBarTitle();
+        final Set<Conversation> changed = getRefreshingConversations();
         for (@IdRes int id : FRAGMENT_ID_NOTIFICATION_ORDER) {
-            refreshFragment(id);
+            refreshFragment(id, changed);
         }
     }
 
@@ -258,8 +261,14 @@ public class ConversationsActivity extends XmppActivity
     }
 
     private void refreshFragment(@IdRes int id) {
+        refreshFragment(id, Collections.emptySet());
+    }
+
+    private void refreshFragment(@IdRes int id, final Set<Conversation> changed) {
         final Fragment fragment = getSupportFragmentManager().findFragmentById(id);
-        if (fragment instanceof XmppFragment xmppFragment) {
+        if (fragment instanceof XmppConnectionService.OnConversationUpdate listener) {
+            listener.onConversationUpdate(changed);
+        } else if (fragment instanceof XmppFragment xmppFragment) {
             xmppFragment.refresh();
         }
     }
@@ -741,6 +750,11 @@ public class ConversationsActivity extends XmppActivity
         this.refreshUi();
     }
 
+    @Override
+    public void onConversationUpdate(final Set<Conversation> changed) {
+        this.refreshUi(changed);
+    }
+
     @Override
     public void onRosterUpdate() {
         this.refreshUi();
@@ -56,6 +56,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import eu.siacs.conversations.BuildConfig;
 import eu.siacs.conversations.Config;
@@ -65,6 +66,7 @@ import eu.siacs.conversations.entities.Account;
 import eu.siacs.conversations.entities.Conversation;
 import eu.siacs.conversations.entities.Conversational;
 import eu.siacs.conversations.services.QuickConversationsService;
+import eu.siacs.conversations.services.XmppConnectionService;
 import eu.siacs.conversations.ui.adapter.ConversationAdapter;
 import eu.siacs.conversations.ui.interfaces.OnConversationArchived;
 import eu.siacs.conversations.ui.interfaces.OnConversationSelected;
@@ -74,10 +76,13 @@ import eu.siacs.conversations.ui.util.ScrollState;
 import eu.siacs.conversations.utils.AccountUtils;
 import eu.siacs.conversations.xmpp.manager.EasyOnboardingManager;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
-public class ConversationsOverviewFragment extends XmppFragment {
+public class ConversationsOverviewFragment extends XmppFragment
+        implements XmppConnectionService.OnConversationUpdate {
 
     private static final String STATE_SCROLL_POSITION =
             ConversationsOverviewFragment.class.getName() + ".scroll_state";
@@ -415,8 +420,26 @@ public class ConversationsOverviewFragment extends XmppFragment {
         EasyOnboardingInviteActivity.launch(account, requireContext());
     }
 
+    @Override
+    public void onConversationUpdate() {
+        refresh();
+    }
+
+    @Override
+    public void onConversationUpdate(final Set<Conversation> changed) {
+        refresh(changed);
+    }
+
     @Override
     void refresh() {
+        refresh(Collections.emptySet());
+    }
+
+    /**
+     * @param changed the conversations whose rows need to be rebound or an empty set for all of
+     *     them. Rows of other conversations might still move.
+     */
+    private void refresh(final Set<Conversation> changed) {
         if (this.binding == null) {
             Log.d(
                     Config.LOGTAG,
@@ -424,6 +447,7 @@ public class ConversationsOverviewFragment extends XmppFragment {
                             + " or activity was null");
             return;
         }
+        final List<Conversation> previous = ImmutableList.copyOf(this.conversations);
         this.requireXmppActivity()
                 .xmppConnectionService
                 .populateWithOrderedConversations(this.conversations);
@@ -441,10 +465,16 @@ public class ConversationsOverviewFragment extends XmppFragment {
         } else {
             this.binding.emptyChatHint.setVisibility(View.GONE);
             this.binding.list.setVisibility(View.VISIBLE);
-            this.conversationsAdapter.notifyDataSetChanged();
+            final boolean atTop =
+                    binding.list.getLayoutManager() instanceof LinearLayoutManager llm
+                            && llm.findFirstCompletelyVisibleItemPosition() == 0;
+            this.conversationsAdapter.notifyConversationsChanged(previous, changed);
             final var scrollState = pendingScrollState.pop();
             if (scrollState != null) {
                 setScrollPosition(scrollState);
+            } else if (atTop) {
+                // keep conversations that moved to the top visible
+                binding.list.scrollToPosition(0);
             }
         }
     }
@@ -7,6 +7,7 @@ import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.text.format.DateUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -52,6 +53,7 @@ public class ImportBackupActivity extends ActionBarActivity
     private ActivityImportBackupBinding binding;
 
     private BackupFileAdapter backupFileAdapter;
+    private List<BackupFile> backupFiles = Collections.emptyList();
 
     private LiveData<Boolean> inProgressImport;
     private Uri currentRestoreDialog;
@@ -195,7 +197,11 @@ public class ImportBackupActivity extends ActionBarActivity
                 new FutureCallback<>() {
                     @Override
                     public void onSuccess(List<BackupFile> files) {
-                        runOnUiThread(() -> backupFileAdapter.setFiles(files));
+                        runOnUiThread(
+                                () -> {
+                                    backupFiles = files;
+                                    backupFileAdapter.setFiles(files);
+                                });
                     }
 
                     @Override
@@ -270,10 +276,26 @@ public class ImportBackupActivity extends ActionBarActivity
                 DataBindingUtil.inflate(
                         LayoutInflater.from(this), R.layout.dialog_enter_password, null, false);
         Log.d(Config.LOGTAG, "attempting to import " + backupFile.getUri());
-        enterPasswordBinding.explain.setText(
+        final String explain =
                 getString(
                         R.string.enter_password_to_restore,
-                        backupFile.getHeader().getJid().toString()));
+                        backupFile.getHeader().getJid().toString());
+        final BackupFile incremental = findNewerIncrementalBackup(backupFile);
+        if (incremental == null) {
+            enterPasswordBinding.explain.setText(explain);
+        } else {
+            enterPasswordBinding.explain.setText(
+                    String.format(
+                            "%s %s",
+                            explain,
+                            getString(
+                                    R.string.newer_incremental_backup_available,
+                                    DateUtils.formatDateTime(
+                                            this,
+                                            incremental.getHeader().getTimestamp(),
+                                            DateUtils.FORMAT_SHOW_DATE
+                                                    | DateUtils.FORMAT_SHOW_TIME))));
+        }
         final MaterialAlertDialogBuilder builder = new MaterialAlertDialogBuilder(this);
         builder.setView(enterPasswordBinding.getRoot());
         builder.setTitle(R.string.enter_password);
@@ -292,6 +314,30 @@ public class ImportBackupActivity extends ActionBarActivity
         dialog.show();
     }
 
+    /**
+     * Full backups can be up to {@link Config#BACKUP_FULL_INTERVAL} old. Recurring backups taken
+     * since then only contain the changes and have to be restored on top of the full backup.
+     */
+    private BackupFile findNewerIncrementalBackup(final BackupFile backupFile) {
+        if (backupFile.isIncremental()) {
+            return null;
+        }
+        final var header = backupFile.getHeader();
+        BackupFile newest = null;
+        for (final BackupFile candidate : this.backupFiles) {
+            final var candidateHeader = candidate.getHeader();
+            if (candidate.isIncremental()
+                    && candidateHeader.getJid().asBareJid().equals(header.getJid().asBareJid())
+                    && candidateHeader.getTimestamp() > header.getTimestamp()
+                    && (newest == null
+                            || candidateHeader.getTimestamp()
+                                    > newest.getHeader().getTimestamp())) {
+                newest = candidate;
+            }
+        }
+        return newest;
+    }
+
     private void onDialogShow(
             final BackupFile backupFile,
             final DialogInterface d,
@@ -358,6 +404,7 @@ public class ImportBackupActivity extends ActionBarActivity
                         switch (reason) {
                             case DECRYPTION_FAILED -> onBackupDecryptionFailed();
                             case ACCOUNT_ALREADY_EXISTS -> onAccountAlreadySetup();
+                            case BASE_BACKUP_REQUIRED -> onBaseBackupRequired();
                             default -> onBackupRestoreFailed();
                         }
                     } else if (state == WorkInfo.State.SUCCEEDED) {
@@ -381,6 +428,11 @@ public class ImportBackupActivity extends ActionBarActivity
                 .show();
     }
 
+    private void onBaseBackupRequired() {
+        Snackbar.make(binding.coordinator, R.string.backup_requires_base, Snackbar.LENGTH_LONG)
+                .show();
+    }
+
     private void onBackupRestored() {
         final var intent = new Intent(this, ConversationActivity.class);
         intent.addFlags(
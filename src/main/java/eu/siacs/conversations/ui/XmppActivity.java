@@ -53,6 +53,7 @@ import androidx.databinding.DataBindingUtil;
 import com.google.android.material.color.MaterialColors;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
@@ -92,7 +93,10 @@ import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 
@@ -143,10 +147,20 @@ public abstract class XmppActivity extends ActionBarActivity {
     private DisplayMetrics metrics;
     private long mLastUiRefresh = 0;
     private final Handler mRefreshUiHandler = new Handler();
+    private final Object mRefreshUiLock = new Object();
+    private boolean mRefreshUiPending = false;
+    // conversations named by the pending refresh requests; null if one of them named none
+    private Set<Conversation> mPendingRefreshConversations = null;
+    private Set<Conversation> mRefreshingConversations = ImmutableSet.of();
     private final Runnable mRefreshUiRunnable =
             () -> {
                 mLastUiRefresh = SystemClock.elapsedRealtime();
-                refreshUiReal();
+                this.mRefreshingConversations = takePendingRefreshConversations();
+                try {
+                    refreshUiReal();
+                } finally {
+                    this.mRefreshingConversations = ImmutableSet.of();
+                }
             };
     protected final FutureCallback<Conversation> adhocCallback =
             new FutureCallback<Conversation>() {
@@ -212,6 +226,26 @@ public abstract class XmppActivity extends ActionBarActivity {
     }
 
     protected final void refreshUi() {
+        refreshUi(Collections.emptySet());
+    }
+
+    /**
+     * @param changed the conversations that need to be refreshed or an empty set if the refresh is
+     *     not specific to any conversation
+     */
+    protected final void refreshUi(final Set<Conversation> changed) {
+        synchronized (mRefreshUiLock) {
+            if (!mRefreshUiPending) {
+                mRefreshUiPending = true;
+                mPendingRefreshConversations = changed.isEmpty() ? null : new HashSet<>(changed);
+            } else if (mPendingRefreshConversations != null) {
+                if (changed.isEmpty()) {
+                    mPendingRefreshConversations = null;
+                } else {
+                    mPendingRefreshConversations.addAll(changed);
+                }
+            }
+        }
         final long diff = SystemClock.elapsedRealtime() - mLastUiRefresh;
         if (diff > Config.REFRESH_UI_INTERVAL) {
             mRefreshUiHandler.removeCallbacks(mRefreshUiRunnable);
@@ -225,6 +259,23 @@ public abstract class XmppActivity extends ActionBarActivity {
 
     protected abstract void refreshUiReal();
 
+    /**
+     * @return the conversations named by all requests that led to the current call of {@link
+     *     #refreshUiReal()} or an empty set if everything needs to be refreshed
+     */
+    protected Set<Conversation> getRefreshingConversations() {
+        return this.mRefreshingConversations;
+    }
+
+    private Set<Conversation> takePendingRefreshConversations() {
+        synchronized (mRefreshUiLock) {
+            final var conversations = mPendingRefreshConversations;
+            mRefreshUiPending = false;
+            mPendingRefreshConversations = null;
+            return conversations == null ? ImmutableSet.of() : ImmutableSet.copyOf(conversations);
+        }
+    }
+
     @Override
     public void onStart() {
         super.onStart();
@@ -10,6 +10,7 @@ import androidx.annotation.DrawableRes;
 import androidx.annotation.NonNull;
 import androidx.core.widget.ImageViewCompat;
 import androidx.databinding.DataBindingUtil;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.color.MaterialColors;
 import com.google.common.base.Optional;
@@ -28,6 +29,7 @@ import eu.siacs.conversations.xmpp.Jid;
 import eu.siacs.conversations.xmpp.jingle.OngoingRtpSession;
 import eu.siacs.conversations.xmpp.manager.JingleManager;
 import java.util.List;
+import java.util.Set;
 
 public class ConversationAdapter
         extends RecyclerView.Adapter<ConversationAdapter.ConversationViewHolder> {
@@ -262,6 +264,44 @@ public class ConversationAdapter
         this.listener = listener;
     }
 
+    /**
+     * Dispatches the difference between the previous and the current content of the backing list
+     * to the RecyclerView instead of invalidating the entire list. Conversations that changed
+     * position are animated as moves.
+     *
+     * @param changed the conversations that have changed or an empty set if any of them might have
+     */
+    public void notifyConversationsChanged(
+            final List<Conversation> previous, final Set<Conversation> changed) {
+        DiffUtil.calculateDiff(
+                        new DiffUtil.Callback() {
+                            @Override
+                            public int getOldListSize() {
+                                return previous.size();
+                            }
+
+                            @Override
+                            public int getNewListSize() {
+                                return conversations.size();
+                            }
+
+                            @Override
+                            public boolean areItemsTheSame(final int oldPos, final int newPos) {
+                                return previous.get(oldPos) == conversations.get(newPos);
+                            }
+
+                            @Override
+                            public boolean areContentsTheSame(final int oldPos, final int newPos) {
+                                // conversations are mutable; we can not tell if anything shown
+                                // (unread count, last message, presence) has changed unless the
+                                // update named the conversations that did
+                                return !changed.isEmpty()
+                                        && !changed.contains(conversations.get(newPos));
+                            }
+                        })
+                .dispatchUpdatesTo(this);
+    }
+
     public void insert(Conversation c, int position) {
         conversations.add(position, c);
         notifyDataSetChanged();
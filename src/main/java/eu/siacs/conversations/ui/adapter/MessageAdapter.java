@@ -11,11 +11,14 @@ import android.os.Build;
 import android.text.Spannable;
 import android.text.SpannableString;
 import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.SpannedString;
 import android.text.format.DateUtils;
 import android.text.style.ForegroundColorSpan;
 import android.text.style.RelativeSizeSpan;
 import android.text.style.StyleSpan;
 import android.util.DisplayMetrics;
+import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -106,6 +109,8 @@ public class MessageAdapter extends ArrayAdapter<Message> {
     private static final int STATUS = 2;
     private static final int DATE_SEPARATOR = 3;
     private static final int RTP_SESSION = 4;
+    // in characters
+    private static final int RENDER_CACHE_SIZE = 512 * 1024;
     private final XmppActivity activity;
     private final AudioPlayer audioPlayer;
     private List<String> highlightedTerm = null;
@@ -114,6 +119,17 @@ public class MessageAdapter extends ArrayAdapter<Message> {
     private OnContactPictureLongClicked mOnContactPictureLongClickedListener;
     private BubbleDesign bubbleDesign = new BubbleDesign(false, false, false, true, true);
     private final boolean mForceNames;
+    // rebinding a text message (which happens for every visible row on each update) only costs a
+    // lookup. theme changes recreate the activity and with it the adapter
+    private final LruCache<RenderKey, Spanned> renderCache =
+            new LruCache<>(RENDER_CACHE_SIZE) {
+                @Override
+                protected int sizeOf(final RenderKey key, final Spanned value) {
+                    return key.body().length() + value.length();
+                }
+            };
+    private String nickHighlightNick;
+    private Pattern nickHighlightPattern;
 
     public MessageAdapter(
             final XmppActivity activity, final List<Message> messages, final boolean forceNames) {
@@ -492,6 +508,56 @@ public class MessageAdapter extends ArrayAdapter<Message> {
             return;
         }
         final String nick = UIHelper.getMessageDisplayName(message);
+        final String ownNick;
+        if (message.getConversation().getMode() == Conversation.MODE_MULTI
+                && message.getStatus() == Message.STATUS_RECEIVED
+                && message.getConversation() instanceof Conversation conversation) {
+            ownNick = conversation.getMucOptions().getActualNick();
+        } else {
+            ownNick = null;
+        }
+        final int textColor = viewHolder.messageBody().getCurrentTextColor();
+        final var key =
+                new RenderKey(
+                        message.getUuid(),
+                        rawBody,
+                        message.getStatus(),
+                        nick,
+                        ownNick,
+                        bubbleColor,
+                        textColor);
+        Spanned rendered = renderCache.get(key);
+        if (rendered == null) {
+            rendered =
+                    new SpannedString(
+                            renderBody(
+                                    viewHolder.messageBody(),
+                                    message,
+                                    rawBody,
+                                    nick,
+                                    ownNick,
+                                    bubbleColor,
+                                    textColor));
+            renderCache.put(key, rendered);
+        }
+        if (highlightedTerm != null) {
+            final var body = new SpannableStringBuilder(rendered);
+            StylingHelper.highlight(viewHolder.messageBody(), body, highlightedTerm);
+            rendered = body;
+        }
+        viewHolder.messageBody().setAutoLinkMask(0);
+        viewHolder.messageBody().setText(rendered);
+        viewHolder.messageBody().setMovementMethod(ClickableMovementMethod.getInstance());
+    }
+
+    private SpannableStringBuilder renderBody(
+            final TextView textView,
+            final Message message,
+            final String rawBody,
+            final String nick,
+            @Nullable final String ownNick,
+            final BubbleColor bubbleColor,
+            @ColorInt final int textColor) {
         final boolean hasMeCommand = message.hasMeCommand();
         final var trimmedBody = rawBody.trim();
         final SpannableStringBuilder body;
@@ -504,7 +570,7 @@ public class MessageAdapter extends ArrayAdapter<Message> {
         if (hasMeCommand) {
             body.replace(0, Message.ME_COMMAND.length(), String.format("%s ", nick));
         }
-        boolean startsWithQuote = handleTextQuotes(viewHolder.messageBody(), body, bubbleColor);
+        boolean startsWithQuote = handleTextQuotes(textView, body, bubbleColor);
         if (!message.isPrivateMessage()) {
             if (hasMeCommand) {
                 body.setSpan(
@@ -537,8 +603,7 @@ public class MessageAdapter extends ArrayAdapter<Message> {
                 body.insert(privateMarkerIndex, " ");
             }
             body.setSpan(
-                    new ForegroundColorSpan(
-                            bubbleToOnSurfaceVariant(viewHolder.messageBody(), bubbleColor)),
+                    new ForegroundColorSpan(bubbleToOnSurfaceVariant(textView, bubbleColor)),
                     0,
                     privateMarkerIndex,
                     Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
@@ -555,42 +620,37 @@ public class MessageAdapter extends ArrayAdapter<Message> {
                         Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
             }
         }
-        if (message.getConversation().getMode() == Conversation.MODE_MULTI
-                && message.getStatus() == Message.STATUS_RECEIVED) {
-            if (message.getConversation() instanceof Conversation conversation) {
-                Pattern pattern =
-                        NotificationService.generateNickHighlightPattern(
-                                conversation.getMucOptions().getActualNick());
-                Matcher matcher = pattern.matcher(body);
-                while (matcher.find()) {
-                    body.setSpan(
-                            new StyleSpan(Typeface.BOLD),
-                            matcher.start(),
-                            matcher.end(),
-                            Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-                }
-            }
-        }
-        final var matcher = Emoticons.getEmojiPattern(body).matcher(body);
-        while (matcher.find()) {
-            if (matcher.start() < matcher.end()) {
+        if (ownNick != null) {
+            final Matcher matcher = getNickHighlightPattern(ownNick).matcher(body);
+            while (matcher.find()) {
                 body.setSpan(
-                        new RelativeSizeSpan(1.2f),
+                        new StyleSpan(Typeface.BOLD),
                         matcher.start(),
                         matcher.end(),
                         Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
             }
         }
+        Emoticons.findEmojis(
+                body,
+                (start, end) ->
+                        body.setSpan(
+                                new RelativeSizeSpan(1.2f),
+                                start,
+                                end,
+                                Spannable.SPAN_EXCLUSIVE_EXCLUSIVE));
 
-        StylingHelper.format(body, viewHolder.messageBody().getCurrentTextColor());
+        StylingHelper.format(body, textColor);
         Linkify.addLinks(body);
         FixedURLSpan.fix(body);
-        if (highlightedTerm != null) {
-            StylingHelper.highlight(viewHolder.messageBody(), body, highlightedTerm);
+        return body;
+    }
+
+    private Pattern getNickHighlightPattern(final String nick) {
+        if (!nick.equals(this.nickHighlightNick)) {
+            this.nickHighlightPattern = NotificationService.generateNickHighlightPattern(nick);
+            this.nickHighlightNick = nick;
         }
-        viewHolder.messageBody().setAutoLinkMask(0);
-        viewHolder.messageBody().setText(body);
-        viewHolder.messageBody().setMovementMethod(ClickableMovementMethod.getInstance());
+        return this.nickHighlightPattern;
     }
 
     private void displayDownloadableMessage(
@@ -1484,6 +1544,16 @@ public class MessageAdapter extends ArrayAdapter<Message> {
         };
     }
 
+    // the body is part of the key so that edits are picked up; nicks and status change the spans
+    private record RenderKey(
+            String uuid,
+            String body,
+            int status,
+            String nick,
+            String ownNick,
+            BubbleColor bubbleColor,
+            int textColor) {}
+
     public enum BubbleColor {
         TRANSPARENT,
         SURFACE,
@@ -76,6 +76,15 @@ public class BackupFile implements Comparable<BackupFile> {
         return uri;
     }
 
+    /**
+     * Incremental backups can only be told apart from full backups by their file name. The last
+     * path segment of a document uri ends with the display name as well.
+     */
+    public boolean isIncremental() {
+        final String name = uri.getLastPathSegment();
+        return name != null && name.endsWith(ExportBackupWorker.INCREMENTAL_EXTENSION);
+    }
+
     public static ListenableFuture<List<BackupFile>> listAsync(final Context context) {
         return Futures.submit(() -> list(context), BACKUP_FILE_READER_EXECUTOR);
     }
@@ -29,20 +29,14 @@
 
 package eu.siacs.conversations.utils;
 
-import com.google.common.base.Joiner;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
+import java.util.Arrays;
 import java.util.Set;
-import java.util.regex.Pattern;
+import net.fellbaum.jemoji.Emoji;
 import net.fellbaum.jemoji.EmojiManager;
 
 public class Emoticons {
 
-    private static final int MAX_EMOJIS = 42;
-
     private static final int VARIATION_16 = 0xFE0F;
     private static final int VARIATION_15 = 0xFE0E;
     private static final String VARIATION_16_STRING = new String(new char[] {VARIATION_16});
@@ -85,17 +79,6 @@ public class Emoticons {
                     "⬆",
                     "⬇");
 
-    private static final LoadingCache<CharSequence, Pattern> CACHE =
-            CacheBuilder.newBuilder()
-                    .maximumSize(256)
-                    .build(
-                            new CacheLoader<>() {
-                                @Override
-                                public Pattern load(final CharSequence key) {
-                                    return generatePattern(key);
-                                }
-                            });
-
     public static String normalizeToVS16(final String input) {
         return TEXT_DEFAULT_TO_VS16.contains(input) && !input.endsWith(VARIATION_15_STRING)
                 ? input + VARIATION_16_STRING
@@ -113,25 +96,124 @@ public class Emoticons {
         return existing.contains(variant) ? variant : original;
     }
 
-    public static Pattern getEmojiPattern(final CharSequence input) {
-        return CACHE.getUnchecked(input);
-    }
-
-    private static Pattern generatePattern(final CharSequence input) {
-        final var emojis = EmojiManager.extractEmojis(CharSequences.nullToEmpty(input));
-        return Pattern.compile(
-                Joiner.on('|')
-                        .join(
-                                Iterables.transform(
-                                        Iterables.limit(emojis, MAX_EMOJIS),
-                                        e -> Pattern.quote(e.getEmoji()))));
+    /**
+     * Reports the ranges of all emojis in a single pass over the input. Where emojis overlap (a
+     * ZWJ sequence and its components for example) the longest one wins.
+     */
+    public static void findEmojis(final CharSequence input, final OnEmojiFound onEmojiFound) {
+        final int length = input.length();
+        int i = 0;
+        while (i < length) {
+            final int end = Trie.ROOT.longestMatch(input, i);
+            if (end > i) {
+                onEmojiFound.onEmojiFound(i, end);
+                i = end;
+            } else {
+                ++i;
+            }
+        }
     }
 
     public static boolean isEmoji(final String input) {
-        return EmojiManager.isEmoji(input);
+        return !input.isEmpty() && Trie.ROOT.longestMatch(input, 0) == input.length();
     }
 
     public static boolean isOnlyEmoji(final String input) {
-        return EmojiManager.removeAllEmojis(input).isEmpty();
+        final int length = input.length();
+        int i = 0;
+        while (i < length) {
+            final int end = Trie.ROOT.longestMatch(input, i);
+            if (end == i) {
+                return false;
+            }
+            i = end;
+        }
+        return true;
+    }
+
+    public interface OnEmojiFound {
+        void onEmojiFound(int start, int end);
+    }
+
+    // holder class; the trie is only built once it is first needed
+    private static final class Trie {
+
+        private static final Node ROOT = build();
+
+        private static Node build() {
+            final var root = new Node();
+            for (final Emoji emoji : EmojiManager.getAllEmojis()) {
+                root.add(emoji.getEmoji());
+            }
+            return root;
+        }
+    }
+
+    /**
+     * A node of a trie over the UTF-16 chars of all emojis. Children are kept in sorted arrays
+     * because the trie has a couple of thousand nodes most of which only have a single child.
+     */
+    private static final class Node {
+
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private boolean terminal = false;
+
+        private void add(final String emoji) {
+            Node node = this;
+            for (int i = 0; i < emoji.length(); ++i) {
+                node = node.getOrCreateChild(emoji.charAt(i));
+            }
+            node.terminal = true;
+        }
+
+        private Node getOrCreateChild(final char c) {
+            final int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            final int insertion = -index - 1;
+            final var child = new Node();
+            final char[] keys = new char[this.keys.length + 1];
+            final Node[] children = new Node[this.children.length + 1];
+            System.arraycopy(this.keys, 0, keys, 0, insertion);
+            System.arraycopy(this.children, 0, children, 0, insertion);
+            keys[insertion] = c;
+            children[insertion] = child;
+            System.arraycopy(
+                    this.keys, insertion, keys, insertion + 1, this.keys.length - insertion);
+            System.arraycopy(
+                    this.children,
+                    insertion,
+                    children,
+                    insertion + 1,
+                    this.children.length - insertion);
+            this.keys = keys;
+            this.children = children;
+            return child;
+        }
+
+        /**
+         * @return the end of the longest emoji starting at {@code start} or {@code start} if there
+         *     is none
+         */
+        private int longestMatch(final CharSequence input, final int start) {
+            int end = start;
+            Node node = this;
+            for (int i = start; i < input.length(); ++i) {
+                final int index = Arrays.binarySearch(node.keys, input.charAt(i));
+                if (index < 0) {
+                    break;
+                }
+                node = node.children[index];
+                if (node.terminal) {
+                    end = i + 1;
+                }
+            }
+            return end;
+        }
     }
 }
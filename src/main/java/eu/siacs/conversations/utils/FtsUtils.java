@@ -29,6 +29,9 @@
 
 package eu.siacs.conversations.utils;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -39,6 +42,14 @@ public class FtsUtils {
 
 	private static final List<String> KEYWORDS = Arrays.asList("OR", "AND");
 
+	// argument to matchinfo() providing everything needed by bm25()
+	public static final String MATCHINFO_FORMAT = "pcnalx";
+
+	private static final double BM25_K1 = 1.2;
+	private static final double BM25_B = 0.75;
+	// keeps terms that occur in more than half of all documents from counting negatively
+	private static final double MIN_IDF = 1e-6;
+
 	public static List<String> parse(String input) {
 		List<String> term = new ArrayList<>();
 		for (String part : input.replace('"',' ').split("\\s+")) {
@@ -119,4 +130,36 @@ public class FtsUtils {
 		}
 		return builder.toString();
 	}
+
+	/**
+	 * Okapi BM25 score of a row calculated from the blob returned by FTS4's matchinfo() when
+	 * called with {@link #MATCHINFO_FORMAT}. FTS4 has no built-in ranking function.
+	 *
+	 * @param matchinfo the matchinfo blob; an array of unsigned 32-bit integers in native byte
+	 *     order
+	 * @param column the index of the column to score
+	 * @return the score; higher is more relevant
+	 */
+	public static double bm25(final byte[] matchinfo, final int column) {
+		final IntBuffer values = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+		final int phrases = values.get(0);
+		final int columns = values.get(1);
+		final long rows = values.get(2) & 0xffffffffL;
+		final double averageLength = values.get(3 + column) & 0xffffffffL;
+		final double length = values.get(3 + columns + column) & 0xffffffffL;
+		final int hitsOffset = 3 + 2 * columns;
+		double score = 0;
+		for (int phrase = 0; phrase < phrases; ++phrase) {
+			final int offset = hitsOffset + 3 * (phrase * columns + column);
+			final double hits = values.get(offset) & 0xffffffffL;
+			final double documents = values.get(offset + 2) & 0xffffffffL;
+			if (hits == 0) {
+				continue;
+			}
+			final double idf = Math.max(MIN_IDF, Math.log((rows - documents + 0.5) / (documents + 0.5)));
+			final double normalizedLength = averageLength == 0 ? 1 : length / averageLength;
+			score += idf * (hits * (BM25_K1 + 1)) / (hits + BM25_K1 * (1 - BM25_B + BM25_B * normalizedLength));
+		}
+		return score;
+	}
 }
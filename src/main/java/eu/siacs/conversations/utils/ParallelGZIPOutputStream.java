@@ -0,0 +1,206 @@
+package eu.siacs.conversations.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses the data written to it in blocks on multiple cores, the way pigz does. Every block is
+ * raw deflated on its own (primed with the last 32 KiB of the previous block) and ends on a byte
+ * boundary with a sync flush; only the last block is finished. The blocks are framed by a single
+ * gzip header and trailer, so the output is one gzip member just like that of {@link
+ * GZIPOutputStream}.
+ *
+ * <p>Concatenated members would be valid gzip too, but {@link java.util.zip.GZIPInputStream} only
+ * continues after a member if the underlying stream reports {@code available() > 0} which the
+ * cipher stream the backup importer reads from frequently does not.
+ */
+public class ParallelGZIPOutputStream extends FilterOutputStream {
+
+    static final int BLOCK_SIZE = 1024 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final byte[] HEADER =
+            new byte[] {
+                (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0,
+            };
+
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int position = 0;
+    private byte[] previous = null;
+    private int previousLength = 0;
+    private long total = 0;
+    private boolean headerWritten = false;
+    private boolean closed = false;
+
+    public ParallelGZIPOutputStream(final OutputStream out) {
+        this(out, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelGZIPOutputStream(final OutputStream out, final int threads) {
+        super(out);
+        final int n = Math.max(1, threads);
+        this.executor = Executors.newFixedThreadPool(n);
+        // bounds the memory used to twice the number of blocks we can compress at the same time
+        this.maxPending = n * 2;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        block[position++] = (byte) b;
+        if (position == BLOCK_SIZE) {
+            submitBlock(false);
+        }
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            final int count = Math.min(remaining, BLOCK_SIZE - position);
+            System.arraycopy(b, offset, block, position, count);
+            position += count;
+            offset += count;
+            remaining -= count;
+            if (position == BLOCK_SIZE) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    /**
+     * Compresses whatever has been buffered so far as a (possibly short) block. Callers should
+     * flush sparingly; every flush costs a few bytes and a less effective dictionary.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (position > 0) {
+            submitBlock(false);
+        }
+        writeCompleted(true);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // the last block is submitted even if empty since it has to carry the final bit
+            submitBlock(true);
+            writeCompleted(true);
+            writeTrailer();
+            out.flush();
+        } finally {
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+
+    private void submitBlock(final boolean last) throws IOException {
+        final byte[] data = this.block;
+        final int length = this.position;
+        final byte[] dictionary = this.previous;
+        final int dictionaryLength = this.previousLength;
+        crc.update(data, 0, length);
+        total += length;
+        if (length > 0) {
+            this.previous = data;
+            this.previousLength = length;
+        }
+        this.block = new byte[BLOCK_SIZE];
+        this.position = 0;
+        pending.add(
+                executor.submit(
+                        () -> compress(data, length, dictionary, dictionaryLength, last)));
+        writeCompleted(false);
+    }
+
+    private void writeCompleted(final boolean all) throws IOException {
+        if (!headerWritten) {
+            out.write(HEADER);
+            headerWritten = true;
+        }
+        while (!pending.isEmpty()
+                && (all || pending.size() >= maxPending || pending.peek().isDone())) {
+            out.write(get(pending.poll()));
+        }
+    }
+
+    private void writeTrailer() throws IOException {
+        writeIntLittleEndian((int) crc.getValue());
+        // ISIZE is the length of the input modulo 2^32
+        writeIntLittleEndian((int) total);
+    }
+
+    private void writeIntLittleEndian(final int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+
+    private static byte[] get(final Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (final ExecutionException e) {
+            throw new IOException("Could not compress block", e.getCause());
+        }
+    }
+
+    private static byte[] compress(
+            final byte[] data,
+            final int length,
+            final byte[] dictionary,
+            final int dictionaryLength,
+            final boolean last) {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            if (dictionary != null) {
+                final int size = Math.min(DICTIONARY_SIZE, dictionaryLength);
+                deflater.setDictionary(dictionary, dictionaryLength - size, size);
+            }
+            deflater.setInput(data, 0, length);
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            final byte[] buffer = new byte[64 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                // a sync flush is complete once it did not fill the whole buffer
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
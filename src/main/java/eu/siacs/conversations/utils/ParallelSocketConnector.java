@@ -0,0 +1,167 @@
+package eu.siacs.conversations.utils;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Connects to the first reachable candidate of an ordered list of candidates by racing staggered
+ * TCP connection attempts (similar to RFC 8305 'happy eyeballs'). The next candidate is tried as
+ * soon as the previous attempt failed or once the attempt delay elapsed without the previous
+ * attempt completing. The first successful attempt wins; all other attempts are cancelled by
+ * closing their sockets.
+ */
+public class ParallelSocketConnector<T> {
+
+    private final Function<T, InetSocketAddress> addressFunction;
+    private final int connectTimeout;
+    private final long attemptDelay;
+
+    public ParallelSocketConnector(
+            final Function<T, InetSocketAddress> addressFunction,
+            final int connectTimeout,
+            final long attemptDelay) {
+        this.addressFunction = addressFunction;
+        this.connectTimeout = connectTimeout;
+        this.attemptDelay = attemptDelay;
+    }
+
+    public Connection<T> connect(final List<T> candidates)
+            throws IOException, InterruptedException {
+        if (candidates.isEmpty()) {
+            throw new ConnectException("No candidates to connect to");
+        }
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final CompletionService<Attempt<T>> completionService =
+                new ExecutorCompletionService<>(executor);
+        final AtomicBoolean finished = new AtomicBoolean(false);
+        final List<Socket> sockets = Collections.synchronizedList(new ArrayList<>());
+        final List<Attempt<T>> attempts = new ArrayList<>();
+        Attempt<T> winner = null;
+        try {
+            int started = 0;
+            start(completionService, candidates.get(started++), sockets, finished);
+            while (true) {
+                final Future<Attempt<T>> completed;
+                if (started < candidates.size()) {
+                    completed = completionService.poll(attemptDelay, TimeUnit.MILLISECONDS);
+                    if (completed == null) {
+                        start(completionService, candidates.get(started++), sockets, finished);
+                        continue;
+                    }
+                } else if (attempts.size() < started) {
+                    completed = completionService.take();
+                } else {
+                    break;
+                }
+                final Attempt<T> attempt = getUnchecked(completed);
+                attempts.add(attempt);
+                if (attempt.socket() != null) {
+                    winner = attempt;
+                    break;
+                } else if (started < candidates.size()) {
+                    // do not wait for the attempt delay if an attempt fails early
+                    start(completionService, candidates.get(started++), sockets, finished);
+                }
+            }
+        } finally {
+            finished.set(true);
+            synchronized (sockets) {
+                for (final Socket socket : sockets) {
+                    if (winner == null || socket != winner.socket()) {
+                        closeQuietly(socket);
+                    }
+                }
+            }
+            executor.shutdown();
+        }
+        if (winner == null) {
+            final Exception last =
+                    attempts.isEmpty() ? null : attempts.get(attempts.size() - 1).exception();
+            throw new ConnectException(
+                    String.format(
+                            "Unable to connect to any of %d candidates (last error: %s)",
+                            candidates.size(), last == null ? null : last.getMessage()));
+        }
+        return new Connection<>(
+                winner.candidate(), winner.socket(), ImmutableList.copyOf(attempts));
+    }
+
+    private void start(
+            final CompletionService<Attempt<T>> completionService,
+            final T candidate,
+            final List<Socket> sockets,
+            final AtomicBoolean finished) {
+        completionService.submit(() -> attempt(candidate, sockets, finished));
+    }
+
+    private Attempt<T> attempt(
+            final T candidate, final List<Socket> sockets, final AtomicBoolean finished) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final Socket socket = new Socket();
+        sockets.add(socket);
+        try {
+            if (finished.get()) {
+                throw new IOException("Race had already been decided");
+            }
+            socket.connect(addressFunction.apply(candidate), connectTimeout);
+            if (finished.get()) {
+                throw new IOException("Race had been decided while connecting");
+            }
+            return new Attempt<>(
+                    candidate, stopwatch.elapsed(TimeUnit.MILLISECONDS), socket, null);
+        } catch (final Exception e) {
+            closeQuietly(socket);
+            return new Attempt<>(candidate, stopwatch.elapsed(TimeUnit.MILLISECONDS), null, e);
+        }
+    }
+
+    private static <T> Attempt<T> getUnchecked(final Future<Attempt<T>> future)
+            throws InterruptedException {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            // attempt() catches all exceptions and reports them as part of the Attempt
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void closeQuietly(final Socket socket) {
+        try {
+            socket.close();
+        } catch (final IOException e) {
+            // ignored
+        }
+    }
+
+    public record Attempt<T>(T candidate, long duration, Socket socket, Exception exception) {
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%s %s after %dms",
+                    candidate,
+                    socket == null
+                            ? "failed (" + (exception == null ? null : exception.getMessage()) + ")"
+                            : "connected",
+                    duration);
+        }
+    }
+
+    public record Connection<T>(T candidate, Socket socket, List<Attempt<T>> attempts) {}
+}
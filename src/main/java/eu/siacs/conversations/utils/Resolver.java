@@ -6,6 +6,7 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
@@ -31,6 +32,9 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.minidns.dnsmessage.DnsMessage;
 import org.minidns.dnsmessage.Question;
 import org.minidns.dnsname.DnsName;
 import org.minidns.dnsname.InvalidDnsNameException;
@@ -96,7 +100,15 @@ public class Resolver {
         }
     }
 
-    public static void clearCache() {}
+    private static final ResolverCache CACHE = new ResolverCache(Resolver::resolveUncached);
+
+    public static void clearCache() {
+        CACHE.invalidate();
+    }
+
+    public static ResolverCache.Statistics getCacheStatistics() {
+        return CACHE.getStatistics();
+    }
 
     public static boolean useDirectTls(final int port) {
         return port == 443 || port == XMPP_PORT_DIRECT_TLS;
@@ -107,9 +119,16 @@ public class Resolver {
         if (!ipResults.isEmpty()) {
             return ipResults;
         }
+        final var network =
+                new AndroidDNSClient(Conversations.getContext()).getNetworkFingerprint();
+        return CACHE.resolve(domain, network);
+    }
 
-        final var startTls = resolveSrvAsFuture(domain, false);
-        final var directTls = resolveSrvAsFuture(domain, true);
+    private static ResolverCache.Entry resolveUncached(final String domain) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final Expiry expiry = new Expiry();
+        final var startTls = resolveSrvAsFuture(domain, false, expiry);
+        final var directTls = resolveSrvAsFuture(domain, true, expiry);
 
         final var combined = FutureMerger.successfulAsList(ImmutableList.of(startTls, directTls));
 
@@ -118,7 +137,7 @@ public class Resolver {
                         combined,
                         results -> {
                             if (results.isEmpty()) {
-                                return resolveNoSrvAsFuture(DnsName.from(domain), true);
+                                return resolveNoSrvAsFuture(DnsName.from(domain), true, expiry);
                             } else {
                                 return Futures.immediateFuture(results);
                             }
@@ -132,13 +151,14 @@ public class Resolver {
         try {
             final var ordered = orderedFuture.get();
             Log.d(Config.LOGTAG, "Resolver (" + ordered.size() + "): " + ordered);
-            return ordered;
+            return new ResolverCache.Entry(
+                    ordered, expiry.get(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
         } catch (final ExecutionException e) {
             Log.d(Config.LOGTAG, "error resolving DNS", e);
-            return Collections.emptyList();
+            return null;
         } catch (final InterruptedException e) {
             Log.d(Config.LOGTAG, "DNS resolution interrupted");
-            return Collections.emptyList();
+            return null;
         }
     }
 
@@ -157,20 +177,22 @@ public class Resolver {
     }
 
     private static ListenableFuture<List<Result>> resolveSrvAsFuture(
-            final String domain, final boolean directTls) {
+            final String domain, final boolean directTls, final Expiry expiry) {
         final DnsName dnsName =
                 DnsName.from(
                         (directTls ? DIRECT_TLS_SERVICE : STARTTLS_SERVICE) + "._tcp." + domain);
-        final var resultFuture = resolveAsFuture(dnsName, SRV.class);
+        final var resultFuture = resolveAsFuture(dnsName, SRV.class, expiry);
         return Futures.transformAsync(
                 resultFuture,
-                result -> resolveIpsAsFuture(result, directTls),
+                result -> resolveIpsAsFuture(result, directTls, expiry),
                 MoreExecutors.directExecutor());
     }
 
     @NonNull
     private static ListenableFuture<List<Result>> resolveIpsAsFuture(
-            final ResolverResult<SRV> srvResolverResult, final boolean directTls) {
+            final ResolverResult<SRV> srvResolverResult,
+            final boolean directTls,
+            final Expiry expiry) {
         final ImmutableList.Builder<ListenableFuture<List<Result>>> futuresBuilder =
                 new ImmutableList.Builder<>();
         for (final SRV record : srvResolverResult.getAnswersOrEmptySet()) {
@@ -179,7 +201,11 @@ public class Resolver {
             }
             final var ipv4sRaw =
                     resolveIpsAsFuture(
-                            record, A.class, srvResolverResult.isAuthenticData(), directTls);
+                            record,
+                            A.class,
+                            srvResolverResult.isAuthenticData(),
+                            directTls,
+                            expiry);
             final var ipv4s =
                     Futures.transform(
                             ipv4sRaw,
@@ -197,7 +223,11 @@ public class Resolver {
                             MoreExecutors.directExecutor());
             final var ipv6s =
                     resolveIpsAsFuture(
-                            record, AAAA.class, srvResolverResult.isAuthenticData(), directTls);
+                            record,
+                            AAAA.class,
+                            srvResolverResult.isAuthenticData(),
+                            directTls,
+                            expiry);
             futuresBuilder.add(ipv4s);
             futuresBuilder.add(ipv6s);
         }
@@ -224,8 +254,12 @@ public class Resolver {
 
     private static <D extends InternetAddressRR<?>>
             ListenableFuture<List<Result>> resolveIpsAsFuture(
-                    final SRV srv, Class<D> type, boolean authenticated, boolean directTls) {
-        final var resultFuture = resolveAsFuture(srv.target, type);
+                    final SRV srv,
+                    final Class<D> type,
+                    final boolean authenticated,
+                    final boolean directTls,
+                    final Expiry expiry) {
+        final var resultFuture = resolveAsFuture(srv.target, type, expiry);
         return Futures.transform(
                 resultFuture,
                 result -> {
@@ -246,12 +280,12 @@ public class Resolver {
     }
 
     private static ListenableFuture<List<Result>> resolveNoSrvAsFuture(
-            final DnsName dnsName, boolean cName) {
+            final DnsName dnsName, final boolean cName, final Expiry expiry) {
         final ImmutableList.Builder<ListenableFuture<List<Result>>> futuresBuilder =
                 new ImmutableList.Builder<>();
         ListenableFuture<List<Result>> aRecordResults =
                 Futures.transform(
-                        resolveAsFuture(dnsName, A.class),
+                        resolveAsFuture(dnsName, A.class, expiry),
                         result ->
                                 Result.createDefaults(
                                         dnsName,
@@ -262,7 +296,7 @@ public class Resolver {
         futuresBuilder.add(aRecordResults);
         ListenableFuture<List<Result>> aaaaRecordResults =
                 Futures.transform(
-                        resolveAsFuture(dnsName, AAAA.class),
+                        resolveAsFuture(dnsName, AAAA.class, expiry),
                         result ->
                                 Result.createDefaults(
                                         dnsName,
@@ -274,12 +308,14 @@ public class Resolver {
         if (cName) {
             ListenableFuture<List<Result>> cNameRecordResults =
                     Futures.transformAsync(
-                            resolveAsFuture(dnsName, CNAME.class),
+                            resolveAsFuture(dnsName, CNAME.class, expiry),
                             result -> {
                                 Collection<ListenableFuture<List<Result>>> test =
                                         Lists.transform(
                                                 ImmutableList.copyOf(result.getAnswersOrEmptySet()),
-                                                cname -> resolveNoSrvAsFuture(cname.target, false));
+                                                cname ->
+                                                        resolveNoSrvAsFuture(
+                                                                cname.target, false, expiry));
                                 return FutureMerger.successfulAsList(test);
                             },
                             MoreExecutors.directExecutor());
@@ -300,17 +336,49 @@ public class Resolver {
     }
 
     private static <D extends Data> ListenableFuture<ResolverResult<D>> resolveAsFuture(
-            final DnsName dnsName, final Class<D> type) {
+            final DnsName dnsName, final Class<D> type, final Expiry expiry) {
 
         final Question question = new Question(dnsName, Record.TYPE.getType(type));
         final AndroidDNSClient androidDNSClient = new AndroidDNSClient(Conversations.getContext());
         final var future = androidDNSClient.queryAsFuture(question);
         return Futures.transform(
                 future,
-                dnsQueryResult -> new ResolverResult<>(question, dnsQueryResult, null),
+                dnsQueryResult -> {
+                    expiry.record(dnsQueryResult.response);
+                    return new ResolverResult<>(question, dnsQueryResult, null);
+                },
                 MoreExecutors.directExecutor());
     }
 
+    /** Tracks the point in time the first of all records involved in a resolution expires. */
+    private static class Expiry {
+
+        private final AtomicLong expires = new AtomicLong(Long.MAX_VALUE);
+
+        private void record(final DnsMessage response) {
+            final List<Record<? extends Data>> answers = response.answerSection;
+            final List<Record<? extends Data>> records =
+                    answers == null || answers.isEmpty() ? response.authoritySection : answers;
+            long ttl = 0;
+            if (records != null && !records.isEmpty()) {
+                ttl = Long.MAX_VALUE;
+                for (final Record<? extends Data> record : records) {
+                    ttl = Math.min(ttl, record.ttl);
+                }
+            }
+            final long received =
+                    response.receiveTimestamp > 0
+                            ? response.receiveTimestamp
+                            : System.currentTimeMillis();
+            final long expiresAt = received + Math.min(ttl, ResolverCache.MAX_TTL) * 1000L;
+            expires.accumulateAndGet(expiresAt, Math::min);
+        }
+
+        private long get() {
+            return expires.get();
+        }
+    }
+
     public static class Result {
         public static final String DOMAIN = "domain";
         public static final String IP = "ip";
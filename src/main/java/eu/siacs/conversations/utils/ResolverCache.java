@@ -0,0 +1,187 @@
+package eu.siacs.conversations.utils;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import com.google.common.base.MoreObjects;
+import eu.siacs.conversations.Config;
+import eu.siacs.conversations.Conversations;
+import eu.siacs.conversations.persistance.DatabaseBackend;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Caches complete, ordered resolver results (SRV targets with their addresses) per domain and
+ * network. Entries are persisted so they survive restarts of the app. Expired entries are still
+ * handed out (stale-while-revalidate) for up to {@link #MAX_STALE} while a fresh resolution runs
+ * in the background; XmppConnection falls back through all candidates anyway and the next connect
+ * will pick up the refreshed result.
+ */
+public class ResolverCache {
+
+    public static final String TABLENAME = "resolver_cache";
+    public static final String NETWORK = "network";
+    public static final String POSITION = "position";
+    public static final String EXPIRES = "expires";
+    public static final String DURATION = "duration";
+
+    // in seconds
+    static final long MIN_TTL = 60;
+    static final long MAX_TTL = 86_400;
+
+    public static final long MAX_STALE = TimeUnit.DAYS.toMillis(7);
+
+    private final Function<String, Entry> resolver;
+    private final Map<Key, Entry> entries = new HashMap<>();
+    private final Set<Key> refreshing = new HashSet<>();
+    private final Executor refreshExecutor = new SerialSingleThreadExecutor("ResolverCache");
+
+    private long hits = 0;
+    private long staleHits = 0;
+    private long misses = 0;
+    private long timeSaved = 0;
+
+    ResolverCache(final Function<String, Entry> resolver) {
+        this.resolver = resolver;
+    }
+
+    public List<Resolver.Result> resolve(final String domain, final String network) {
+        final Key key = new Key(domain, network);
+        final long now = System.currentTimeMillis();
+        final Entry entry = get(key);
+        if (entry != null && entry.isUsable(now)) {
+            final boolean fresh = entry.isFresh(now);
+            synchronized (this) {
+                if (fresh) {
+                    hits++;
+                } else {
+                    staleHits++;
+                }
+                timeSaved += entry.duration();
+            }
+            if (!fresh) {
+                refreshInBackground(key);
+            }
+            Log.d(
+                    Config.LOGTAG,
+                    "resolver cache "
+                            + (fresh ? "hit" : "stale hit")
+                            + " for "
+                            + domain
+                            + " ("
+                            + getStatistics()
+                            + ")");
+            return entry.results();
+        }
+        synchronized (this) {
+            misses++;
+        }
+        final Entry resolved = resolveAndStore(key);
+        return resolved == null ? Collections.emptyList() : resolved.results();
+    }
+
+    public synchronized void invalidate() {
+        // persisted entries are keyed by network and will be loaded again when we return to it
+        entries.clear();
+    }
+
+    public synchronized Statistics getStatistics() {
+        return new Statistics(hits, staleHits, misses, timeSaved);
+    }
+
+    private Entry get(final Key key) {
+        synchronized (this) {
+            final Entry entry = entries.get(key);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        final Entry persisted = getDatabase().findResolverCacheEntry(key.domain(), key.network());
+        if (persisted != null) {
+            synchronized (this) {
+                entries.put(key, persisted);
+            }
+        }
+        return persisted;
+    }
+
+    private void refreshInBackground(final Key key) {
+        synchronized (this) {
+            if (!refreshing.add(key)) {
+                return;
+            }
+        }
+        refreshExecutor.execute(
+                () -> {
+                    try {
+                        resolveAndStore(key);
+                    } finally {
+                        synchronized (this) {
+                            refreshing.remove(key);
+                        }
+                    }
+                });
+    }
+
+    private Entry resolveAndStore(final Key key) {
+        final Entry resolved = resolver.apply(key.domain());
+        if (resolved == null || resolved.results().isEmpty()) {
+            // keep whatever we had; an empty result is more likely a network problem
+            return resolved;
+        }
+        final long now = System.currentTimeMillis();
+        final long expires =
+                Math.max(
+                        now + TimeUnit.SECONDS.toMillis(MIN_TTL),
+                        Math.min(resolved.expires(), now + TimeUnit.SECONDS.toMillis(MAX_TTL)));
+        final Entry entry = new Entry(resolved.results(), expires, resolved.duration());
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+        getDatabase().saveResolverCacheEntry(key.domain(), key.network(), entry);
+        return entry;
+    }
+
+    private static DatabaseBackend getDatabase() {
+        return DatabaseBackend.getInstance(Conversations.getContext());
+    }
+
+    private record Key(String domain, String network) {}
+
+    public record Entry(List<Resolver.Result> results, long expires, long duration) {
+
+        boolean isFresh(final long now) {
+            return now < expires;
+        }
+
+        boolean isUsable(final long now) {
+            return now < expires + MAX_STALE;
+        }
+    }
+
+    public record Statistics(long hits, long staleHits, long misses, long timeSaved) {
+
+        public double hitRate() {
+            final long total = hits + staleHits + misses;
+            return total == 0 ? 0 : (double) (hits + staleHits) / total;
+        }
+
+        @Override
+        @NonNull
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("hits", hits)
+                    .add("staleHits", staleHits)
+                    .add("misses", misses)
+                    .add("hitRate", String.format("%.2f", hitRate()))
+                    .add("timeSaved", timeSaved + "ms")
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package eu.siacs.conversations.utils;
+
+import androidx.annotation.NonNull;
+import com.google.common.base.MoreObjects;
+import com.google.common.hash.Hasher;
+import eu.siacs.conversations.Config;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.function.LongConsumer;
+
+/**
+ * Copies file transfers in large chunks. Buffers are pooled since a transfer allocating a fresh
+ * buffer (and a small one at that) per file mostly measures the garbage collector. Every chunk is
+ * read once and fed to all hashers before it is written.
+ */
+public final class TransferEngine {
+
+    private static final int MAX_POOLED_BUFFERS = 4;
+
+    private static final ArrayDeque<byte[]> POOL = new ArrayDeque<>();
+
+    private TransferEngine() {}
+
+    public static byte[] acquireBuffer() {
+        synchronized (POOL) {
+            final byte[] buffer = POOL.poll();
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return new byte[Config.FILE_TRANSFER_CHUNK_SIZE];
+    }
+
+    public static void releaseBuffer(final byte[] buffer) {
+        if (buffer.length != Config.FILE_TRANSFER_CHUNK_SIZE) {
+            return;
+        }
+        synchronized (POOL) {
+            if (POOL.size() < MAX_POOLED_BUFFERS) {
+                POOL.push(buffer);
+            }
+        }
+    }
+
+    /**
+     * Copies exactly {@code total} bytes from input to output. Never reads beyond {@code total}
+     * since the input might be a transport that stays open after the file.
+     *
+     * @param hashers are fed every byte that has been copied
+     * @param progress is called with the number of bytes copied with each chunk
+     */
+    public static Statistics transfer(
+            final InputStream inputStream,
+            final OutputStream outputStream,
+            final long total,
+            final Collection<Hasher> hashers,
+            final LongConsumer progress)
+            throws IOException {
+        final byte[] buffer = acquireBuffer();
+        long transmitted = 0;
+        long reading = 0;
+        long hashing = 0;
+        long writing = 0;
+        try {
+            while (transmitted < total) {
+                final int length = (int) Math.min(buffer.length, total - transmitted);
+                final long start = System.nanoTime();
+                final int count = inputStream.read(buffer, 0, length);
+                final long read = System.nanoTime();
+                if (count == -1) {
+                    throw new EOFException(
+                            String.format("reached EOF after %d/%d", transmitted, total));
+                }
+                for (final Hasher hasher : hashers) {
+                    hasher.putBytes(buffer, 0, count);
+                }
+                final long hashed = System.nanoTime();
+                outputStream.write(buffer, 0, count);
+                final long written = System.nanoTime();
+                reading += read - start;
+                hashing += hashed - read;
+                writing += written - hashed;
+                transmitted += count;
+                progress.accept(count);
+            }
+        } finally {
+            releaseBuffer(buffer);
+        }
+        return new Statistics(transmitted, reading, hashing, writing);
+    }
+
+    /** Time spent in each stage; reading and writing include decryption and encryption */
+    public record Statistics(long bytes, long readNanos, long hashNanos, long writeNanos) {
+
+        private String throughput(final long nanos) {
+            if (nanos <= 0) {
+                return "n/a";
+            }
+            return String.format(Locale.ENGLISH, "%.1fMB/s", bytes * 1000.0 / nanos);
+        }
+
+        @Override
+        @NonNull
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("bytes", bytes)
+                    .add("read", throughput(readNanos))
+                    .add("hash", throughput(hashNanos))
+                    .add("write", throughput(writeNanos))
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package eu.siacs.conversations.worker;
+
+import android.content.ContentValues;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the rows of a backup file in a pipeline: one thread decrypts and decompresses, a second
+ * one parses the JSON. The thread calling {@link #next()} is left with nothing to do but to insert
+ * the rows into the database.
+ */
+final class BackupRowReader implements Closeable {
+
+    private static final Pattern COLUMN_PATTERN = Pattern.compile("^[a-zA-Z_]+$");
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final byte[] END_OF_CHUNKS = new byte[0];
+    private static final Row END_OF_ROWS = new Row(null, null);
+
+    private final InputStream inputStream;
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(16);
+    private final BlockingQueue<Row> rows = new ArrayBlockingQueue<>(1024);
+    private volatile Exception failure;
+
+    /**
+     * @param inputStream the decrypting and decompressing stream; reading from it is what is
+     *     moved to the first thread
+     */
+    BackupRowReader(final InputStream inputStream) {
+        this.inputStream = inputStream;
+        this.executor.execute(this::readChunks);
+        this.executor.execute(this::parseRows);
+    }
+
+    /**
+     * @return the next row or null at the end of the backup
+     */
+    Row next() throws IOException {
+        final Row row;
+        try {
+            row = rows.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (row != END_OF_ROWS) {
+            return row;
+        }
+        // keep returning the end marker on subsequent calls
+        rows.offer(END_OF_ROWS);
+        final Exception exception = this.failure;
+        if (exception instanceof IOException ioException) {
+            throw ioException;
+        } else if (exception instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        } else if (exception != null) {
+            throw new IOException(exception);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        inputStream.close();
+    }
+
+    private void readChunks() {
+        try {
+            while (true) {
+                final byte[] buffer = new byte[CHUNK_SIZE];
+                final int count = inputStream.read(buffer);
+                if (count < 0) {
+                    break;
+                }
+                if (count == CHUNK_SIZE) {
+                    chunks.put(buffer);
+                } else if (count > 0) {
+                    final byte[] chunk = new byte[count];
+                    System.arraycopy(buffer, 0, chunk, 0, count);
+                    chunks.put(chunk);
+                }
+            }
+        } catch (final InterruptedException e) {
+            return;
+        } catch (final Exception e) {
+            fail(e);
+        }
+        try {
+            chunks.put(END_OF_CHUNKS);
+        } catch (final InterruptedException e) {
+            // closed
+        }
+    }
+
+    private void parseRows() {
+        try (final JsonReader jsonReader =
+                new JsonReader(
+                        new InputStreamReader(new ChunkInputStream(), StandardCharsets.UTF_8))) {
+            if (jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                jsonReader.beginArray();
+            } else {
+                throw new IllegalStateException("Backup file did not begin with array");
+            }
+            while (jsonReader.hasNext()) {
+                rows.put(readRow(jsonReader));
+            }
+            jsonReader.endArray();
+        } catch (final InterruptedException | InterruptedIOException e) {
+            return;
+        } catch (final Exception e) {
+            fail(e);
+        }
+        try {
+            rows.put(END_OF_ROWS);
+        } catch (final InterruptedException e) {
+            // closed
+        }
+    }
+
+    private synchronized void fail(final Exception e) {
+        // the first failure is the cause; the parser will only report the stream ending early
+        if (this.failure == null) {
+            this.failure = e;
+        }
+    }
+
+    private static Row readRow(final JsonReader jsonReader) throws IOException {
+        jsonReader.beginObject();
+        final String firstParameter = jsonReader.nextName();
+        if (!firstParameter.equals("table")) {
+            throw new IllegalStateException("Expected key 'table'");
+        }
+        final String table = jsonReader.nextString();
+        final ContentValues contentValues = new ContentValues();
+        final String secondParameter = jsonReader.nextName();
+        if (!secondParameter.equals("values")) {
+            throw new IllegalStateException("Expected key 'values'");
+        }
+        jsonReader.beginObject();
+        while (jsonReader.peek() != JsonToken.END_OBJECT) {
+            final String name = jsonReader.nextName();
+            if (COLUMN_PATTERN.matcher(name).matches()) {
+                if (jsonReader.peek() == JsonToken.NULL) {
+                    jsonReader.nextNull();
+                    contentValues.putNull(name);
+                } else if (jsonReader.peek() == JsonToken.NUMBER) {
+                    contentValues.put(name, jsonReader.nextLong());
+                } else {
+                    contentValues.put(name, jsonReader.nextString());
+                }
+            } else {
+                throw new IOException(String.format("Unexpected column name %s", name));
+            }
+        }
+        jsonReader.endObject();
+        jsonReader.endObject();
+        return new Row(table, contentValues);
+    }
+
+    record Row(String table, ContentValues values) {}
+
+    private class ChunkInputStream extends InputStream {
+
+        private byte[] chunk = new byte[0];
+        private int position = 0;
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return chunk[position++] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            final int count = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        private boolean fill() throws IOException {
+            if (chunk == END_OF_CHUNKS) {
+                return false;
+            }
+            if (position < chunk.length) {
+                return true;
+            }
+            try {
+                chunk = chunks.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            position = 0;
+            return chunk != END_OF_CHUNKS;
+        }
+    }
+}
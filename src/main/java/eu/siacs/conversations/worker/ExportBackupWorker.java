@@ -9,6 +9,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ServiceInfo;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.SystemClock;
@@ -22,6 +23,7 @@ import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closeables;
 import com.google.gson.stream.JsonWriter;
 import eu.siacs.conversations.AppSettings;
 import eu.siacs.conversations.Config;
@@ -35,6 +37,8 @@ import eu.siacs.conversations.persistance.FileBackend;
 import eu.siacs.conversations.services.QuickConversationsService;
 import eu.siacs.conversations.utils.BackupFileHeader;
 import eu.siacs.conversations.utils.Compatibility;
+import eu.siacs.conversations.utils.ParallelGZIPOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -54,7 +58,6 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.zip.GZIPOutputStream;
 import javax.crypto.Cipher;
 import javax.crypto.CipherOutputStream;
 import javax.crypto.NoSuchPaddingException;
@@ -74,6 +77,14 @@ public class ExportBackupWorker extends Worker {
 
     public static final String MIME_TYPE = "application/vnd.conversations.backup";
 
+    // first row of incremental backups; full backups do not have it
+    public static final String TABLE_INCREMENTAL = "incremental";
+    public static final String INCREMENTAL_BASE = "base";
+    public static final String INCREMENTAL_SINCE = "since";
+    public static final String INCREMENTAL_EXTENSION = ".incremental.ceb";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private static final int NOTIFICATION_ID = 19;
     private static final int BACKUP_CREATED_NOTIFICATION_ID = 23;
 
@@ -170,7 +181,15 @@ public class ExportBackupWorker extends Worker {
             }
             final Uri uri;
             try {
-                uri = export(database, account, password, backupLocation, max, count);
+                uri =
+                        export(
+                                database,
+                                appSettings,
+                                account,
+                                password,
+                                backupLocation,
+                                max,
+                                count);
             } catch (final WorkStoppedException e) {
                 Log.d(Config.LOGTAG, "ExportBackupWorker has stopped. Returning what we have");
                 return locations.build();
@@ -178,11 +197,33 @@ public class ExportBackupWorker extends Worker {
             locations.add(uri);
             count++;
         }
+        pruneMessageChanges(database, appSettings, accounts);
         return locations.build();
     }
 
+    /**
+     * Changes to messages are only needed for incremental backups. Once every account has a full
+     * backup newer than a change it is no longer needed.
+     */
+    private static void pruneMessageChanges(
+            final DatabaseBackend database,
+            final AppSettings appSettings,
+            final List<Account> accounts) {
+        long upTo = Long.MAX_VALUE;
+        for (final Account account : accounts) {
+            final var base = appSettings.getBackupBase(account.getUuid());
+            if (base != null) {
+                upTo = Math.min(upTo, base.change());
+            }
+        }
+        if (upTo != Long.MAX_VALUE) {
+            database.pruneMessageChanges(upTo);
+        }
+    }
+
     private Uri export(
             final DatabaseBackend database,
+            final AppSettings appSettings,
             final Account account,
             final String password,
             final Uri backupLocation,
@@ -207,13 +248,19 @@ public class ExportBackupWorker extends Worker {
         final byte[] salt = new byte[16];
         secureRandom.nextBytes(IV);
         secureRandom.nextBytes(salt);
+        final long timestamp = System.currentTimeMillis();
         final BackupFileHeader backupFileHeader =
                 new BackupFileHeader(
                         context.getString(R.string.app_name),
                         account.getJid(),
-                        System.currentTimeMillis(),
+                        timestamp,
                         IV,
                         salt);
+        // messages received moments ago might still be queued for a group commit
+        database.commitPendingMessages();
+        final SQLiteDatabase db = database.getReadableDatabase();
+        final String uuid = account.getUuid();
+        final AppSettings.BackupBase base = getIncrementalBase(appSettings, uuid, backupLocation);
         final var notification = getNotification();
         final var cancelPendingIntent =
                 WorkManager.getInstance(context).createCancelPendingIntent(getId());
@@ -226,8 +273,13 @@ public class ExportBackupWorker extends Worker {
         final Progress progress = new Progress(notification, max, count);
         final String filename =
                 String.format(
-                        "%s.%s.ceb",
-                        account.getJid().asBareJid().toString(), DATE_FORMAT.format(new Date()));
+                        base == null ? "%s.%s.ceb" : "%s.%s" + INCREMENTAL_EXTENSION,
+                        account.getJid().asBareJid().toString(),
+                        DATE_FORMAT.format(new Date(timestamp)));
+        // taken before exporting so that messages inserted while exporting go into the next backup
+        final long lastMessage =
+                DatabaseUtils.longForQuery(db, "select max(rowid) from " + Message.TABLENAME, null);
+        final long lastChange = database.getLastMessageChange();
         final OutputStream outputStream;
         final Uri location;
         if ("file".equalsIgnoreCase(backupLocation.getScheme())) {
@@ -253,7 +305,8 @@ public class ExportBackupWorker extends Worker {
             location = file.getUri();
             outputStream = context.getContentResolver().openOutputStream(location);
         }
-        final DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+        final DataOutputStream dataOutputStream =
+                new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
         backupFileHeader.write(dataOutputStream);
         dataOutputStream.flush();
 
@@ -265,29 +318,43 @@ public class ExportBackupWorker extends Worker {
         SecretKeySpec keySpec = new SecretKeySpec(key, KEY_TYPE);
         IvParameterSpec ivSpec = new IvParameterSpec(IV);
         cipher.init(Cipher.ENCRYPT_MODE, keySpec, ivSpec);
-        CipherOutputStream cipherOutputStream = new CipherOutputStream(outputStream, cipher);
+        // the cipher text goes through the same buffer as the header
+        final CipherOutputStream cipherOutputStream =
+                new CipherOutputStream(dataOutputStream, cipher);
 
-        final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(cipherOutputStream);
+        final ParallelGZIPOutputStream gzipOutputStream =
+                new ParallelGZIPOutputStream(cipherOutputStream);
         final JsonWriter jsonWriter =
                 new JsonWriter(new OutputStreamWriter(gzipOutputStream, StandardCharsets.UTF_8));
-        jsonWriter.beginArray();
-        final SQLiteDatabase db = database.getReadableDatabase();
-        final String uuid = account.getUuid();
-        accountExport(db, uuid, jsonWriter);
-        simpleExport(db, Conversation.TABLENAME, Conversation.ACCOUNT, uuid, jsonWriter);
-        messageExport(db, uuid, location, jsonWriter, progress);
-        for (final String table :
-                Arrays.asList(
-                        SQLiteAxolotlStore.PREKEY_TABLENAME,
-                        SQLiteAxolotlStore.SIGNED_PREKEY_TABLENAME,
-                        SQLiteAxolotlStore.SESSION_TABLENAME,
-                        SQLiteAxolotlStore.IDENTITIES_TABLENAME)) {
-            throwIfWorkStopped(location);
-            simpleExport(db, table, SQLiteAxolotlStore.ACCOUNT, uuid, jsonWriter);
+        try {
+            jsonWriter.beginArray();
+            if (base != null) {
+                incrementalExport(base, jsonWriter);
+            }
+            accountExport(db, uuid, jsonWriter);
+            simpleExport(db, Conversation.TABLENAME, Conversation.ACCOUNT, uuid, jsonWriter);
+            messageExport(db, uuid, base, location, jsonWriter, progress);
+            for (final String table :
+                    Arrays.asList(
+                            SQLiteAxolotlStore.PREKEY_TABLENAME,
+                            SQLiteAxolotlStore.SIGNED_PREKEY_TABLENAME,
+                            SQLiteAxolotlStore.SESSION_TABLENAME,
+                            SQLiteAxolotlStore.IDENTITIES_TABLENAME)) {
+                throwIfWorkStopped(location);
+                simpleExport(db, table, SQLiteAxolotlStore.ACCOUNT, uuid, jsonWriter);
+            }
+            jsonWriter.endArray();
+        } catch (final WorkStoppedException e) {
+            // releases the compression threads; the file itself has already been deleted
+            Closeables.close(jsonWriter, true);
+            throw e;
         }
-        jsonWriter.endArray();
-        jsonWriter.flush();
         jsonWriter.close();
+        if (base == null) {
+            appSettings.setBackupBase(
+                    uuid,
+                    new AppSettings.BackupBase(filename, timestamp, lastMessage, lastChange));
+        }
         final var path = location.getPath();
         if ("file".equalsIgnoreCase(location.getScheme()) && path != null) {
             mediaScannerScanFile(new File(path));
@@ -296,6 +363,28 @@ public class ExportBackupWorker extends Worker {
         return location;
     }
 
+    /**
+     * Recurring backups are incremental as long as the full backup they are based on is recent and
+     * still exists in the backup location. One-off backups are always full backups.
+     */
+    private AppSettings.BackupBase getIncrementalBase(
+            final AppSettings appSettings, final String account, final Uri backupLocation) {
+        if (!recurringBackup) {
+            return null;
+        }
+        final var base = appSettings.getBackupBase(account);
+        if (base == null
+                || System.currentTimeMillis() - base.timestamp() > Config.BACKUP_FULL_INTERVAL) {
+            return null;
+        }
+        if ("file".equalsIgnoreCase(backupLocation.getScheme())) {
+            final var file = new File(backupLocation.getPath(), base.filename());
+            return file.isFile() ? base : null;
+        }
+        final var tree = DocumentFile.fromTreeUri(getApplicationContext(), backupLocation);
+        return tree != null && tree.findFile(base.filename()) != null ? base : null;
+    }
+
     private NotificationCompat.Builder getNotification() {
         final var context = getApplicationContext();
         final NotificationCompat.Builder notification =
@@ -333,6 +422,21 @@ public class ExportBackupWorker extends Worker {
         getApplicationContext().sendBroadcast(intent);
     }
 
+    private static void incrementalExport(
+            final AppSettings.BackupBase base, final JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("table");
+        writer.value(TABLE_INCREMENTAL);
+        writer.name("values");
+        writer.beginObject();
+        writer.name(INCREMENTAL_BASE);
+        writer.value(base.filename());
+        writer.name(INCREMENTAL_SINCE);
+        writer.value(base.timestamp());
+        writer.endObject();
+        writer.endObject();
+    }
+
     private static void accountExport(
             final SQLiteDatabase db, final String uuid, final JsonWriter writer)
             throws IOException {
@@ -384,70 +488,97 @@ public class ExportBackupWorker extends Worker {
             throws IOException {
         try (final Cursor cursor =
                 db.query(table, null, column + "=?", new String[] {uuid}, null, null, null)) {
-            while (cursor != null && cursor.moveToNext()) {
-                writer.beginObject();
-                writer.name("table");
-                writer.value(table);
-                writer.name("values");
-                writer.beginObject();
-                for (int i = 0; i < cursor.getColumnCount(); ++i) {
-                    final String name = cursor.getColumnName(i);
-                    writer.name(name);
-                    final String value = cursor.getString(i);
-                    writer.value(value);
-                }
-                writer.endObject();
-                writer.endObject();
+            if (cursor == null) {
+                return;
+            }
+            final String[] columns = cursor.getColumnNames();
+            while (cursor.moveToNext()) {
+                writeRow(cursor, table, columns, writer);
             }
         }
     }
 
+    private static void writeRow(
+            final Cursor cursor,
+            final String table,
+            final String[] columns,
+            final JsonWriter writer)
+            throws IOException {
+        writer.beginObject();
+        writer.name("table");
+        writer.value(table);
+        writer.name("values");
+        writer.beginObject();
+        for (int i = 0; i < columns.length; ++i) {
+            writer.name(columns[i]);
+            switch (cursor.getType(i)) {
+                case Cursor.FIELD_TYPE_NULL -> writer.nullValue();
+                case Cursor.FIELD_TYPE_INTEGER -> writer.value(cursor.getLong(i));
+                // the importer reads numbers as long; anything else goes in as string
+                default -> writer.value(cursor.getString(i));
+            }
+        }
+        writer.endObject();
+        writer.endObject();
+    }
+
     private void messageExport(
             final SQLiteDatabase db,
             final String uuid,
+            final AppSettings.BackupBase base,
             final Uri location,
             final JsonWriter writer,
             final Progress progress)
             throws IOException, WorkStoppedException {
         final var notificationManager =
                 getApplicationContext().getSystemService(NotificationManager.class);
+        final String from =
+                " from messages join conversations on"
+                        + " conversations.uuid=messages.conversationUuid where"
+                        + " conversations.accountUuid=?";
+        final String selection;
+        final String[] selectionArgs;
+        if (base == null) {
+            selection = from;
+            selectionArgs = new String[] {uuid};
+        } else {
+            // new rows get a higher rowid; the time catches up on rowids that have been reused.
+            // corrections, retractions and status changes show up in message_changes
+            selection =
+                    from
+                            + " and (messages.rowid>? or messages.timeSent>=? or messages.rowid"
+                            + " in (select messageRowid from message_changes where id>?))";
+            selectionArgs =
+                    new String[] {
+                        uuid,
+                        String.valueOf(base.message()),
+                        String.valueOf(base.timestamp()),
+                        String.valueOf(base.change())
+                    };
+        }
+        // counting is cheaper than Cursor.getCount() which would materialize all rows upfront
+        final long size =
+                Math.max(
+                        1,
+                        DatabaseUtils.longForQuery(
+                                db, "select count(messages.uuid)" + selection, selectionArgs));
+        Log.d(Config.LOGTAG, "exporting " + size + " messages for account " + uuid);
         try (final Cursor cursor =
-                db.rawQuery(
-                        "select messages.* from messages join conversations on"
-                                + " conversations.uuid=messages.conversationUuid where"
-                                + " conversations.accountUuid=?",
-                        new String[] {uuid})) {
-            final int size = cursor.getCount();
-            Log.d(Config.LOGTAG, "exporting " + size + " messages for account " + uuid);
+                db.rawQuery("select messages.*" + selection, selectionArgs)) {
+            final String[] columns = cursor.getColumnNames();
             long lastUpdate = 0;
-            int i = 0;
+            long i = 0;
             int p = Integer.MIN_VALUE;
             while (cursor.moveToNext()) {
                 throwIfWorkStopped(location);
-                writer.beginObject();
-                writer.name("table");
-                writer.value(Message.TABLENAME);
-                writer.name("values");
-                writer.beginObject();
-                for (int j = 0; j < cursor.getColumnCount(); ++j) {
-                    final String name = cursor.getColumnName(j);
-                    writer.name(name);
-                    final String value = cursor.getString(j);
-                    writer.value(value);
-                }
-                writer.endObject();
-                writer.endObject();
-                final int percentage = i * 100 / size;
+                writeRow(cursor, Message.TABLENAME, columns, writer);
+                final int percentage = (int) Math.min(100, i * 100 / size);
                 if (p < percentage && (SystemClock.elapsedRealtime() - lastUpdate) > 2_000) {
                     p = percentage;
                     lastUpdate = SystemClock.elapsedRealtime();
                     notificationManager.notify(NOTIFICATION_ID, progress.build(p));
                 }
                 i++;
-                if (i % 500 == 0) {
-                    Log.d(Config.LOGTAG, "flushing writer after " + i + " messages");
-                    writer.flush();
-                }
             }
         }
     }
@@ -10,7 +10,9 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ServiceInfo;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import android.provider.OpenableColumns;
 import android.util.Log;
@@ -20,12 +22,11 @@ import androidx.work.Data;
 import androidx.work.ForegroundInfo;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
+import com.google.common.base.Joiner;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.CountingInputStream;
-import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonToken;
 import eu.siacs.conversations.Config;
 import eu.siacs.conversations.Conversations;
 import eu.siacs.conversations.R;
@@ -39,20 +40,20 @@ import eu.siacs.conversations.services.XmppConnectionService;
 import eu.siacs.conversations.utils.AccountUtils;
 import eu.siacs.conversations.utils.BackupFileHeader;
 import eu.siacs.conversations.xmpp.Jid;
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipException;
 import javax.crypto.BadPaddingException;
@@ -86,13 +87,12 @@ public class ImportBackupWorker extends Worker {
                     .addAll(OMEMO_TABLE_LIST)
                     .build();
 
-    private static final Pattern COLUMN_PATTERN = Pattern.compile("^[a-zA-Z_]+$");
-
     private static final int NOTIFICATION_ID = 21;
 
     private final String password;
     private final Uri uri;
     private final boolean includeOmemo;
+    private int progress = -1;
 
     public ImportBackupWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
         super(context, workerParams);
@@ -178,14 +178,6 @@ public class ImportBackupWorker extends Worker {
 
         final var accounts = database.getAccountAddresses(false);
 
-        if (QuickConversationsService.isQuicksy() && !accounts.isEmpty()) {
-            return failure(Reason.ACCOUNT_ALREADY_EXISTS);
-        }
-
-        if (accounts.contains(backupFileHeader.getJid())) {
-            return failure(Reason.ACCOUNT_ALREADY_EXISTS);
-        }
-
         final byte[] key = ExportBackupWorker.getKey(password, backupFileHeader.getSalt());
 
         final AEADBlockCipher cipher = GCMBlockCipher.newInstance(AESEngine.newInstance());
@@ -195,27 +187,47 @@ public class ImportBackupWorker extends Worker {
                 new CipherInputStream(countingInputStream, cipher);
 
         final GZIPInputStream gzipInputStream = new GZIPInputStream(cipherInputStream);
-        final BufferedReader reader =
-                new BufferedReader(new InputStreamReader(gzipInputStream, StandardCharsets.UTF_8));
-        final JsonReader jsonReader = new JsonReader(reader);
-        if (jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
-            jsonReader.beginArray();
-        } else {
-            throw new IllegalStateException("Backup file did not begin with array");
-        }
+        final Jid jid = backupFileHeader.getJid();
         db.beginTransaction();
-        while (jsonReader.hasNext()) {
-            if (jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
-                importRow(db, jsonReader, backupFileHeader.getJid(), password);
-            } else if (jsonReader.peek() == JsonToken.END_ARRAY) {
-                jsonReader.endArray();
-                continue;
+        try (final BackupRowReader reader = new BackupRowReader(gzipInputStream);
+                final InsertStatements statements = new InsertStatements(db)) {
+            boolean first = true;
+            boolean incremental = false;
+            BackupRowReader.Row row;
+            while ((row = reader.next()) != null) {
+                if (ExportBackupWorker.TABLE_INCREMENTAL.equals(row.table())) {
+                    if (!first) {
+                        throw new IOException("Unexpected incremental row");
+                    }
+                    incremental = true;
+                    final var base = row.values().getAsString(ExportBackupWorker.INCREMENTAL_BASE);
+                    Log.d(Config.LOGTAG, "incremental backup based on " + base);
+                } else if (!TABLE_ALLOW_LIST.contains(row.table())) {
+                    throw new IOException(
+                            String.format("%s is not recognized for import", row.table()));
+                }
+                if (first) {
+                    first = false;
+                    final var reason = verifyAccounts(accounts, jid, incremental);
+                    if (reason != null) {
+                        return failure(reason);
+                    }
+                    // rolled back along with everything else should the import fail
+                    database.suspendMessageIndexes();
+                    if (incremental) {
+                        continue;
+                    }
+                }
+                importRow(statements, row, jid, password, incremental);
+                updateImportBackupNotification(fileSize, countingInputStream.getCount());
+            }
+            if (!first) {
+                database.resumeMessageIndexes();
             }
-            updateImportBackupNotification(fileSize, countingInputStream.getCount());
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
-        db.setTransactionSuccessful();
-        db.endTransaction();
-        final Jid jid = backupFileHeader.getJid();
         final Cursor countCursor =
                 db.rawQuery(
                         "select count(messages.uuid) from messages join conversations on"
@@ -233,44 +245,33 @@ public class ImportBackupWorker extends Worker {
         return Result.success();
     }
 
-    private void importRow(
-            final SQLiteDatabase db,
-            final JsonReader jsonReader,
-            final Jid account,
-            final String passphrase)
-            throws IOException {
-        jsonReader.beginObject();
-        final String firstParameter = jsonReader.nextName();
-        if (!firstParameter.equals("table")) {
-            throw new IllegalStateException("Expected key 'table'");
-        }
-        final String table = jsonReader.nextString();
-        if (!TABLE_ALLOW_LIST.contains(table)) {
-            throw new IOException(String.format("%s is not recognized for import", table));
+    /**
+     * Full backups can only be restored if the account does not exist yet. Incremental backups on
+     * the other hand are applied on top of the restored full backup they are based on.
+     */
+    private static Reason verifyAccounts(
+            final Collection<Jid> accounts, final Jid jid, final boolean incremental) {
+        if (incremental) {
+            return accounts.contains(jid) ? null : Reason.BASE_BACKUP_REQUIRED;
         }
-        final ContentValues contentValues = new ContentValues();
-        final String secondParameter = jsonReader.nextName();
-        if (!secondParameter.equals("values")) {
-            throw new IllegalStateException("Expected key 'values'");
+        if (QuickConversationsService.isQuicksy() && !accounts.isEmpty()) {
+            return Reason.ACCOUNT_ALREADY_EXISTS;
         }
-        jsonReader.beginObject();
-        while (jsonReader.peek() != JsonToken.END_OBJECT) {
-            final String name = jsonReader.nextName();
-            if (COLUMN_PATTERN.matcher(name).matches()) {
-                if (jsonReader.peek() == JsonToken.NULL) {
-                    jsonReader.nextNull();
-                    contentValues.putNull(name);
-                } else if (jsonReader.peek() == JsonToken.NUMBER) {
-                    contentValues.put(name, jsonReader.nextLong());
-                } else {
-                    contentValues.put(name, jsonReader.nextString());
-                }
-            } else {
-                throw new IOException(String.format("Unexpected column name %s", name));
-            }
+        if (accounts.contains(jid)) {
+            return Reason.ACCOUNT_ALREADY_EXISTS;
         }
-        jsonReader.endObject();
-        jsonReader.endObject();
+        return null;
+    }
+
+    private void importRow(
+            final InsertStatements statements,
+            final BackupRowReader.Row row,
+            final Jid account,
+            final String passphrase,
+            final boolean incremental)
+            throws IOException {
+        final String table = row.table();
+        final ContentValues contentValues = row.values();
         if (Account.TABLENAME.equals(table)) {
             final Jid jid =
                     Jid.of(
@@ -288,6 +289,10 @@ public class ImportBackupWorker extends Worker {
             } else {
                 throw new IOException("jid or password in table did not match backup");
             }
+            if (incremental) {
+                // the account has been restored from the base backup
+                return;
+            }
             final var keys = Account.parseKeys(contentValues.getAsString(Account.KEYS));
             final var deviceId = keys.optString(SQLiteAxolotlStore.JSONKEY_REGISTRATION_ID);
             final var importReadyKeys = new JSONObject();
@@ -301,17 +306,17 @@ public class ImportBackupWorker extends Worker {
             contentValues.put(Account.KEYS, importReadyKeys.toString());
         }
         if (this.includeOmemo) {
-            db.insert(table, null, contentValues);
+            statements.insert(table, contentValues, incremental);
         } else {
             if (OMEMO_TABLE_LIST.contains(table)) {
                 if (SQLiteAxolotlStore.IDENTITIES_TABLENAME.equals(table)
                         && contentValues.getAsInteger(SQLiteAxolotlStore.OWN) == 0) {
-                    db.insert(table, null, contentValues);
+                    statements.insert(table, contentValues, incremental);
                 } else {
                     Log.d(Config.LOGTAG, "skipping over omemo key material in table " + table);
                 }
             } else {
-                db.insert(table, null, contentValues);
+                statements.insert(table, contentValues, incremental);
             }
         }
     }
@@ -331,6 +336,10 @@ public class ImportBackupWorker extends Worker {
             max = 100;
             progress = (int) (current * 100 / total);
         }
+        if (progress == this.progress) {
+            return;
+        }
+        this.progress = progress;
         getApplicationContext()
                 .getSystemService(NotificationManager.class)
                 .notify(NOTIFICATION_ID, createImportBackupNotification(max, progress));
@@ -383,8 +392,76 @@ public class ImportBackupWorker extends Worker {
         return Result.failure(new Data.Builder().putString("reason", reason.toString()).build());
     }
 
+    /**
+     * Compiles one insert statement per table and set of columns and reuses it for all rows of
+     * that shape instead of having {@link SQLiteDatabase#insert(String, String, ContentValues)}
+     * build and compile a statement for every single row.
+     */
+    private static class InsertStatements implements Closeable {
+
+        private final SQLiteDatabase db;
+        private final Map<String, SQLiteStatement> statements = new HashMap<>();
+
+        private InsertStatements(final SQLiteDatabase db) {
+            this.db = db;
+        }
+
+        private void insert(
+                final String table, final ContentValues contentValues, final boolean incremental) {
+            final String conflict;
+            if (!incremental) {
+                conflict = "";
+            } else if (Conversation.TABLENAME.equals(table)) {
+                // replacing a conversation would cascade into deleting its messages
+                conflict = " OR IGNORE";
+            } else {
+                conflict = " OR REPLACE";
+            }
+            final String[] columns = contentValues.keySet().toArray(new String[0]);
+            final String sql =
+                    "INSERT"
+                            + conflict
+                            + " INTO "
+                            + table
+                            + "("
+                            + Joiner.on(',').join(columns)
+                            + ") VALUES("
+                            + Joiner.on(',').join(Collections.nCopies(columns.length, "?"))
+                            + ")";
+            SQLiteStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = db.compileStatement(sql);
+                statements.put(sql, statement);
+            }
+            for (int i = 0; i < columns.length; ++i) {
+                final Object value = contentValues.get(columns[i]);
+                if (value == null) {
+                    statement.bindNull(i + 1);
+                } else if (value instanceof Long longValue) {
+                    statement.bindLong(i + 1, longValue);
+                } else {
+                    statement.bindString(i + 1, value.toString());
+                }
+            }
+            try {
+                statement.executeInsert();
+            } catch (final SQLException e) {
+                // same as SQLiteDatabase.insert(); a broken row should not fail the import
+                Log.e(Config.LOGTAG, "error inserting into " + table, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            for (final SQLiteStatement statement : statements.values()) {
+                statement.close();
+            }
+        }
+    }
+
     public enum Reason {
         ACCOUNT_ALREADY_EXISTS,
+        BASE_BACKUP_REQUIRED,
         DECRYPTION_FAILED,
         FILE_NOT_FOUND,
         GENERIC;
@@ -1,11 +1,15 @@
 package eu.siacs.conversations.xml;
 
 import android.util.Log;
+import com.google.common.io.CountingOutputStream;
 import eu.siacs.conversations.Config;
 import im.conversations.android.xmpp.StreamElementWriter;
 import im.conversations.android.xmpp.model.StreamElement;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -13,29 +17,47 @@ import java.util.concurrent.TimeUnit;
 public class TagWriter {
 
     private StreamElementWriter outputStream;
+    private CountingOutputStream countingOutputStream;
     private boolean finished = false;
+    private volatile long coalescingWindow = 0;
 
     private final LinkedBlockingQueue<StreamElement> writeQueue = new LinkedBlockingQueue<>();
     private CountDownLatch stanzaWriterCountDownLatch = null;
 
+    // guards the counting output stream and the statistics below
+    private final Object statisticsLock = new Object();
+    private long batches = 0;
+    private long stanzas = 0;
+    private long bytes = 0;
+    private long bytesAtLastFlush = 0;
+
     private final Thread asyncStanzaWriter =
             new Thread() {
 
                 @Override
                 public void run() {
                     stanzaWriterCountDownLatch = new CountDownLatch(1);
+                    final List<StreamElement> batch = new ArrayList<>();
                     while (!isInterrupted()) {
                         if (finished && writeQueue.isEmpty()) {
                             break;
                         }
                         try {
-                            final var output = writeQueue.take();
-                            outputStream.write(output);
-                            if (writeQueue.isEmpty()) {
-                                outputStream.flush();
+                            batch.add(writeQueue.take());
+                            final long window = coalescingWindow;
+                            if (window > 0) {
+                                final StreamElement next =
+                                        writeQueue.poll(window, TimeUnit.MILLISECONDS);
+                                if (next != null) {
+                                    batch.add(next);
+                                }
                             }
+                            writeQueue.drainTo(batch);
+                            writeBatch(batch);
                         } catch (Exception e) {
                             break;
+                        } finally {
+                            batch.clear();
                         }
                     }
                     stanzaWriterCountDownLatch.countDown();
@@ -48,7 +70,53 @@ public class TagWriter {
         if (outputStream == null) {
             throw new IOException();
         }
-        this.outputStream = new StreamElementWriter(outputStream);
+        final var countingOutputStream = new CountingOutputStream(outputStream);
+        synchronized (this.statisticsLock) {
+            this.countingOutputStream = countingOutputStream;
+            this.bytesAtLastFlush = 0;
+        }
+        this.outputStream = new StreamElementWriter(countingOutputStream);
+    }
+
+    /**
+     * Lets the writer thread wait up to the given amount of milliseconds for more stanzas before
+     * writing and flushing a batch. Useful during bulk operations (for example stream management
+     * catchup) where a burst of outgoing stanzas is to be expected. 0 disables coalescing.
+     */
+    public void setCoalescingWindow(final long milliseconds) {
+        this.coalescingWindow = Math.max(0, milliseconds);
+    }
+
+    private void writeBatch(final List<StreamElement> batch) throws IOException {
+        final var outputStream = this.outputStream;
+        if (outputStream == null) {
+            throw new IOException("output stream was null");
+        }
+        for (final StreamElement element : batch) {
+            outputStream.write(element);
+        }
+        outputStream.flush();
+        countFlush(batch.size());
+    }
+
+    private void countFlush(final int count) {
+        synchronized (this.statisticsLock) {
+            final var countingOutputStream = this.countingOutputStream;
+            if (countingOutputStream == null) {
+                return;
+            }
+            final long total = countingOutputStream.getCount();
+            this.bytes += total - bytesAtLastFlush;
+            this.bytesAtLastFlush = total;
+            this.stanzas += count;
+            this.batches++;
+        }
+    }
+
+    public Statistics getStatistics() {
+        synchronized (this.statisticsLock) {
+            return new Statistics(batches, stanzas, bytes);
+        }
     }
 
     public void beginDocument() throws IOException {
@@ -69,6 +137,7 @@ public class TagWriter {
         outputStream.write(tag);
         if (flush) {
             outputStream.flush();
+            countFlush(0);
         }
     }
 
@@ -78,6 +147,7 @@ public class TagWriter {
         }
         outputStream.write(element);
         outputStream.flush();
+        countFlush(1);
     }
 
     public void writeStanzaAsync(StreamElement stanza) {
@@ -122,4 +192,26 @@ public class TagWriter {
         }
         outputStream = null;
     }
+
+    public record Statistics(long batches, long stanzas, long bytes) {
+
+        public double stanzasPerBatch() {
+            return batches == 0 ? 0 : (double) stanzas / batches;
+        }
+
+        public long bytesPerFlush() {
+            return batches == 0 ? 0 : bytes / batches;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    Locale.US,
+                    "%d stanzas in %d batches (%.1f stanzas/batch, %d bytes/flush)",
+                    stanzas,
+                    batches,
+                    stanzasPerBatch(),
+                    bytesPerFlush());
+        }
+    }
 }
@@ -10,6 +10,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import org.jspecify.annotations.NonNull;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -33,7 +34,7 @@ public class XmlReader implements Closeable {
         }
         this.is = inputStream;
         try {
-            parser.setInput(new InputStreamReader(this.is));
+            parser.setInput(new InputStreamReader(this.is, StandardCharsets.UTF_8));
         } catch (XmlPullParserException e) {
             throw new IOException("error resetting parser");
         }
@@ -44,7 +45,7 @@ public class XmlReader implements Closeable {
             throw new IOException();
         }
         try {
-            parser.setInput(new InputStreamReader(this.is));
+            parser.setInput(new InputStreamReader(this.is, StandardCharsets.UTF_8));
         } catch (XmlPullParserException e) {
             throw new IOException("error resetting parser");
         }
@@ -56,29 +57,30 @@ public class XmlReader implements Closeable {
     }
 
     public @NonNull Tag readTag() throws IOException {
+        final int eventType = next();
+        if (eventType == XmlPullParser.START_TAG) {
+            final Tag tag = Tag.start(parser.getName(), parser.getNamespace());
+            for (int i = 0; i < parser.getAttributeCount(); ++i) {
+                tag.setAttribute(attributeName(i), parser.getAttributeValue(i));
+            }
+            return tag;
+        } else if (eventType == XmlPullParser.END_TAG) {
+            return Tag.end(parser.getName());
+        } else {
+            return Tag.no(parser.getText());
+        }
+    }
+
+    private int next() throws IOException {
         try {
             while (this.is != null && parser.next() != XmlPullParser.END_DOCUMENT) {
-                if (parser.getEventType() == XmlPullParser.START_TAG) {
-                    Tag tag = Tag.start(parser.getName(), parser.getNamespace());
-                    for (int i = 0; i < parser.getAttributeCount(); ++i) {
-                        // TODO we would also look at parser.getAttributeNamespace()
-                        final String prefix = parser.getAttributePrefix(i);
-                        String name;
-                        if (prefix != null && !prefix.isEmpty()) {
-                            name = prefix + ":" + parser.getAttributeName(i);
-                        } else {
-                            name = parser.getAttributeName(i);
-                        }
-                        tag.setAttribute(name, parser.getAttributeValue(i));
-                    }
-                    return tag;
-                } else if (parser.getEventType() == XmlPullParser.END_TAG) {
-                    return Tag.end(parser.getName());
-                } else if (parser.getEventType() == XmlPullParser.TEXT) {
-                    return Tag.no(parser.getText());
+                final int eventType = parser.getEventType();
+                if (eventType == XmlPullParser.START_TAG
+                        || eventType == XmlPullParser.END_TAG
+                        || eventType == XmlPullParser.TEXT) {
+                    return eventType;
                 }
             }
-
         } catch (final IOException e) {
             throw e;
         } catch (final Throwable throwable) {
@@ -93,6 +95,16 @@ public class XmlReader implements Closeable {
         throw new EOFException();
     }
 
+    private String attributeName(final int index) {
+        // TODO we would also look at parser.getAttributeNamespace()
+        final String prefix = parser.getAttributePrefix(index);
+        if (prefix != null && !prefix.isEmpty()) {
+            return prefix + ":" + parser.getAttributeName(index);
+        } else {
+            return parser.getAttributeName(index);
+        }
+    }
+
     public <T extends StreamElement> T readElement(final Tag current, final Class<T> clazz)
             throws IOException {
         final Element element = readElement(current);
@@ -104,31 +116,39 @@ public class XmlReader implements Closeable {
     }
 
     public Element readElement(final Tag currentTag) throws IOException {
-        final var namespace = currentTag.getNamespace();
-        final var name = currentTag.getName();
-        final Element element = ExtensionFactory.create(name, namespace);
+        final Element element =
+                ExtensionFactory.create(currentTag.getName(), currentTag.getNamespace());
         element.setAttributes(currentTag.getAttributes());
-        Tag nextTag = this.readTag();
-        if (nextTag == null) {
-            throw new IOException("interrupted mid tag");
+        readContent(element);
+        return element;
+    }
+
+    /**
+     * Reads the element the parser is currently positioned on (START_TAG) straight into its
+     * {@link Element} without going through an intermediate {@link Tag}
+     */
+    private Element readElement() throws IOException {
+        final Element element = ExtensionFactory.create(parser.getName(), parser.getNamespace());
+        final var attributes = element.getAttributes();
+        for (int i = 0; i < parser.getAttributeCount(); ++i) {
+            attributes.put(attributeName(i), parser.getAttributeValue(i));
         }
-        if (nextTag.isNo()) {
-            element.setContent(nextTag.getName());
-            nextTag = this.readTag();
-            if (nextTag == null) {
-                throw new IOException("interrupted mid tag");
-            }
+        readContent(element);
+        return element;
+    }
+
+    private void readContent(final Element element) throws IOException {
+        final String name = element.getName();
+        int eventType = next();
+        if (eventType == XmlPullParser.TEXT) {
+            element.setContent(parser.getText());
+            eventType = next();
         }
-        while (!nextTag.isEnd(element.getName())) {
-            if (!nextTag.isNo()) {
-                Element child = this.readElement(nextTag);
-                element.addChild(child);
-            }
-            nextTag = this.readTag();
-            if (nextTag == null) {
-                throw new IOException("interrupted mid tag");
+        while (eventType != XmlPullParser.END_TAG || !name.equals(parser.getName())) {
+            if (eventType == XmlPullParser.START_TAG) {
+                element.addChild(readElement());
             }
+            eventType = next();
         }
-        return element;
     }
 }
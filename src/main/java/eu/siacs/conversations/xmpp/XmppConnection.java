@@ -56,6 +56,7 @@ import eu.siacs.conversations.services.XmppConnectionService;
 import eu.siacs.conversations.ui.util.PendingItem;
 import eu.siacs.conversations.utils.AccountUtils;
 import eu.siacs.conversations.utils.CryptoHelper;
+import eu.siacs.conversations.utils.ParallelSocketConnector;
 import eu.siacs.conversations.utils.Resolver;
 import eu.siacs.conversations.utils.SSLSockets;
 import eu.siacs.conversations.utils.SocksSocketFactory;
@@ -140,7 +141,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
@@ -444,53 +444,69 @@ public class XmppConnection implements Runnable {
                                     + ": injected see-other-host on position 0");
                     results.add(0, seeOtherHost);
                 }
-                for (final Iterator<Resolver.Result> iterator = results.iterator();
-                        iterator.hasNext(); ) {
-                    final Resolver.Result result = iterator.next();
+                final ParallelSocketConnector<Resolver.Result> connector =
+                        new ParallelSocketConnector<>(
+                                result ->
+                                        result.getIp() != null
+                                                ? new InetSocketAddress(
+                                                        result.getIp(), result.getPort())
+                                                : new InetSocketAddress(
+                                                        IDN.toASCII(
+                                                                result.getHostname().toString()),
+                                                        result.getPort()),
+                                Config.SOCKET_TIMEOUT * 1000,
+                                Config.CONNECTION_ATTEMPT_DELAY);
+                final List<Resolver.Result> remaining = new ArrayList<>(results);
+                while (!remaining.isEmpty()) {
                     if (Thread.currentThread().isInterrupted()) {
                         Log.d(
                                 Config.LOGTAG,
                                 account.getJid().asBareJid() + ": Thread was interrupted");
                         return;
                     }
+                    final ParallelSocketConnector.Connection<Resolver.Result> connection;
+                    try {
+                        connection = connector.connect(remaining);
+                    } catch (final InterruptedException e) {
+                        Log.d(
+                                Config.LOGTAG,
+                                account.getJid().asBareJid()
+                                        + ": thread was interrupted while connecting");
+                        return;
+                    } catch (final IOException e) {
+                        Log.d(
+                                Config.LOGTAG,
+                                account.getJid().asBareJid() + ": " + e.getMessage());
+                        throw new UnknownHostException();
+                    }
+                    for (final ParallelSocketConnector.Attempt<Resolver.Result> attempt :
+                            connection.attempts()) {
+                        Log.d(
+                                Config.LOGTAG,
+                                account.getJid().asBareJid() + ": connection attempt " + attempt);
+                        // candidates that could not be reached are not raced again should the
+                        // winner fail later on
+                        if (attempt.exception() != null) {
+                            remaining.remove(attempt.candidate());
+                        }
+                    }
+                    final Resolver.Result result = connection.candidate();
+                    remaining.remove(result);
                     try {
                         // if tls is true, encryption is implied and must not be started
                         features.encryptionEnabled = result.isDirectTls();
                         verifiedHostname =
                                 result.isAuthenticated() ? result.getHostname().toString() : null;
-                        final InetSocketAddress addr;
-                        if (result.getIp() != null) {
-                            addr = new InetSocketAddress(result.getIp(), result.getPort());
-                            Log.d(
-                                    Config.LOGTAG,
-                                    account.getJid().asBareJid().toString()
-                                            + ": using values from resolver "
-                                            + (result.getHostname() == null
-                                                    ? ""
-                                                    : result.getHostname().toString() + "/")
-                                            + result.getIp().getHostAddress()
-                                            + ":"
-                                            + result.getPort()
-                                            + " tls: "
-                                            + features.encryptionEnabled);
-                        } else {
-                            addr =
-                                    new InetSocketAddress(
-                                            IDN.toASCII(result.getHostname().toString()),
-                                            result.getPort());
-                            Log.d(
-                                    Config.LOGTAG,
-                                    account.getJid().asBareJid().toString()
-                                            + ": using values from resolver "
-                                            + result.getHostname().toString()
-                                            + ":"
-                                            + result.getPort()
-                                            + " tls: "
-                                            + features.encryptionEnabled);
-                        }
-
-                        localSocket = new Socket();
-                        localSocket.connect(addr, Config.SOCKET_TIMEOUT * 1000);
+                        Log.d(
+                                Config.LOGTAG,
+                                account.getJid().asBareJid().toString()
+                                        + ": using values from resolver "
+                                        + result.asDestination()
+                                        + ":"
+                                        + result.getPort()
+                                        + " tls: "
+                                        + features.encryptionEnabled);
+                        localSocket = connection.socket();
                         localSocket.setSoTimeout(Config.SOCKET_TIMEOUT * 1000);
                         if (features.encryptionEnabled) {
                             localSocket = upgradeSocketToTls(localSocket);
@@ -510,16 +526,19 @@ public class XmppConnection implements Runnable {
                             throw new StateChangingException(Account.State.STREAM_OPENING_ERROR);
                         }
                     } catch (final StateChangingException e) {
-                        if (!iterator.hasNext()) {
+                        FileBackend.close(connection.socket());
+                        if (remaining.isEmpty()) {
                             throw e;
                         }
                     } catch (InterruptedException e) {
+                        FileBackend.close(connection.socket());
                         Log.d(
                                 Config.LOGTAG,
                                 account.getJid().asBareJid()
                                         + ": thread was interrupted before beginning stream");
                         return;
                     } catch (final Throwable e) {
+                        FileBackend.close(connection.socket());
                         Log.d(
                                 Config.LOGTAG,
                                 account.getJid().asBareJid().toString()
@@ -528,7 +547,7 @@ public class XmppConnection implements Runnable {
                                         + "("
                                         + e.getClass().getName()
                                         + ")");
-                        if (!iterator.hasNext()) {
+                        if (remaining.isEmpty()) {
                             throw new UnknownHostException();
                         }
                     }
@@ -733,6 +752,9 @@ public class XmppConnection implements Runnable {
                 processEnabled(enabled);
             } else if (nextTag.isStart("r", Namespace.STREAM_MANAGEMENT)) {
                 tagReader.readElement(nextTag, Request.class);
+                // messages received from the archive are committed in batches; make sure they
+                // hit the database before we acknowledge them
+                mXmppConnectionService.databaseBackend.commitPendingMessages();
                 if (Config.EXTENDED_SM_LOGGING) {
                     Log.d(
                             Config.LOGTAG,
@@ -746,6 +768,7 @@ public class XmppConnection implements Runnable {
                 boolean accountUiNeedsRefresh = false;
                 synchronized (NotificationService.CATCHUP_LOCK) {
                     if (mWaitingForSmCatchup.compareAndSet(true, false)) {
+                        tagWriter.setCoalescingWindow(0);
                         final int messageCount = mSmCatchupMessageCounter.get();
                         final int pendingIQs = packetCallbacks.size();
                         Log.d(
@@ -1897,6 +1920,7 @@ public class XmppConnection implements Runnable {
     private void prepareForResume(final String streamId) {
         this.mSmCatchupMessageCounter.set(0);
         this.mWaitingForSmCatchup.set(true);
+        this.tagWriter.setCoalescingWindow(Config.SM_CATCHUP_COALESCING_WINDOW);
         this.pendingResumeId.push(streamId);
     }
 
@@ -2673,6 +2697,9 @@ public class XmppConnection implements Runnable {
     public void disconnect(final boolean force) {
         interrupt();
         Log.d(Config.LOGTAG, account.getJid().asBareJid() + ": disconnecting force=" + force);
+        Log.d(
+                Config.LOGTAG,
+                account.getJid().asBareJid() + ": wrote " + this.tagWriter.getStatistics());
         if (force) {
             forceCloseSocket();
         } else {
@@ -25,6 +25,7 @@ import eu.siacs.conversations.services.AbstractConnectionManager;
 import eu.siacs.conversations.services.DebouncedInterfaceUpdater;
 import eu.siacs.conversations.services.XmppConnectionService;
 import eu.siacs.conversations.utils.Compatibility;
+import eu.siacs.conversations.utils.TransferEngine;
 import eu.siacs.conversations.xml.Namespace;
 import eu.siacs.conversations.xmpp.Jid;
 import eu.siacs.conversations.xmpp.XmppConnection;
@@ -42,7 +43,6 @@ import im.conversations.android.xmpp.model.jingle.Jingle;
 import im.conversations.android.xmpp.model.jingle.Reason;
 import im.conversations.android.xmpp.model.stanza.Iq;
 import java.io.Closeable;
-import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -1349,6 +1349,11 @@ public class JingleFileTransferConnection extends AbstractJingleConnection
             return Ints.saturatedCast(Math.round((1.0 * transmitted / total) * 100));
         }
 
+        protected void onTransmitted(final long count) {
+            this.transmitted += count;
+            updateProgress();
+        }
+
         public void updateProgress() {
             final int current = getProgress();
             final boolean update;
@@ -1403,7 +1408,8 @@ public class JingleFileTransferConnection extends AbstractJingleConnection
                                 128,
                                 transportSecurity.iv));
                 Log.d(Config.LOGTAG, "setting up CipherInputStream");
-                return new CipherInputStream(fileInputStream, cipher);
+                return new CipherInputStream(
+                        fileInputStream, cipher, Config.FILE_TRANSFER_CHUNK_SIZE);
             }
         }
 
@@ -1413,23 +1419,22 @@ public class JingleFileTransferConnection extends AbstractJingleConnection
             final var sha1Hasher = Hashing.sha1().newHasher();
             final var sha256Hasher = Hashing.sha256().newHasher();
             try (final var fileInputStream = openFileInputStream()) {
-                final var buffer = new byte[4096];
-                while (total - transmitted > 0) {
-                    final int count = fileInputStream.read(buffer);
-                    if (count == -1) {
-                        throw new EOFException(
-                                String.format("reached EOF after %d/%d", transmitted, total));
-                    }
-                    outputStream.write(buffer, 0, count);
-                    sha1Hasher.putBytes(buffer, 0, count);
-                    sha256Hasher.putBytes(buffer, 0, count);
-                    transmitted += count;
-                    updateProgress();
-                }
+                final var statistics =
+                        TransferEngine.transfer(
+                                fileInputStream,
+                                outputStream,
+                                total,
+                                Arrays.asList(sha1Hasher, sha256Hasher),
+                                this::onTransmitted);
                 outputStream.flush();
                 Log.d(
                         Config.LOGTAG,
-                        "transmitted " + transmitted + " bytes from " + file.getAbsolutePath());
+                        "transmitted "
+                                + transmitted
+                                + " bytes from "
+                                + file.getAbsolutePath()
+                                + " "
+                                + statistics);
                 final List<FileTransferDescription.Hash> hashes =
                         ImmutableList.of(
                                 new FileTransferDescription.Hash(
@@ -1493,22 +1498,21 @@ public class JingleFileTransferConnection extends AbstractJingleConnection
             final var sha1Hasher = Hashing.sha1().newHasher();
             final var sha256Hasher = Hashing.sha256().newHasher();
             try (final var fileOutputStream = openFileOutputStream()) {
-                final var buffer = new byte[4096];
-                while (total - transmitted > 0) {
-                    final int count = inputStream.read(buffer);
-                    if (count == -1) {
-                        throw new EOFException(
-                                String.format("reached EOF after %d/%d", transmitted, total));
-                    }
-                    fileOutputStream.write(buffer, 0, count);
-                    sha1Hasher.putBytes(buffer, 0, count);
-                    sha256Hasher.putBytes(buffer, 0, count);
-                    transmitted += count;
-                    updateProgress();
-                }
+                final var statistics =
+                        TransferEngine.transfer(
+                                inputStream,
+                                fileOutputStream,
+                                total,
+                                Arrays.asList(sha1Hasher, sha256Hasher),
+                                this::onTransmitted);
                 Log.d(
                         Config.LOGTAG,
-                        "written " + transmitted + " bytes to " + file.getAbsolutePath());
+                        "written "
+                                + transmitted
+                                + " bytes to "
+                                + file.getAbsolutePath()
+                                + " "
+                                + statistics);
                 final List<FileTransferDescription.Hash> hashes =
                         ImmutableList.of(
                                 new FileTransferDescription.Hash(
@@ -26,17 +26,26 @@ import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.util.ArrayDeque;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class InbandBytestreamsTransport implements Transport {
 
-    private static final int DEFAULT_BLOCK_SIZE = 8192;
+    // the largest block size we offer or accept. base64 encoded this is still well below the
+    // stanza size limits of common servers. peers offering less are honored
+    private static final int DEFAULT_BLOCK_SIZE = 16384;
 
-    private final PipedInputStream pipedInputStream = new PipedInputStream(DEFAULT_BLOCK_SIZE);
+    // number of data blocks that are sent without having been acknowledged
+    private static final int WINDOW_SIZE = 8;
+
+    // sequence numbers are 16 bit and wrap around to 0 after 65535
+    private static final int SEQUENCE_MASK = 0xffff;
+
+    private final PipedInputStream pipedInputStream =
+            new PipedInputStream(DEFAULT_BLOCK_SIZE * WINDOW_SIZE);
     private final PipedOutputStream pipedOutputStream = new PipedOutputStream();
     private final CountDownLatch terminationLatch = new CountDownLatch(1);
 
@@ -55,6 +64,7 @@ public class InbandBytestreamsTransport implements Transport {
     private final Thread blockSenderThread;
 
     private final AtomicBoolean isReceiving = new AtomicBoolean(false);
+    private int expectedSequence = 0;
 
     public InbandBytestreamsTransport(
             final XmppConnection xmppConnection, final Jid with, final boolean initiator) {
@@ -155,6 +165,18 @@ public class InbandBytestreamsTransport implements Transport {
             throw new IqProcessingException(
                     new Condition.BadRequest(), "block size larger than expected");
         }
+        final var sequence = data.getSequence();
+        synchronized (this) {
+            // the sender will close the stream after receiving an error
+            if (!sequence.isPresent() || sequence.get() != this.expectedSequence) {
+                throw new IqProcessingException(
+                        new Condition.UnexpectedRequest(),
+                        String.format(
+                                "expected block #%d. received #%s",
+                                this.expectedSequence, sequence.orNull()));
+            }
+            this.expectedSequence = (this.expectedSequence + 1) & SEQUENCE_MASK;
+        }
         Log.d(Config.LOGTAG, "ibb received " + buffer.length + " bytes");
         try {
             pipedOutputStream.write(buffer);
@@ -227,7 +249,9 @@ public class InbandBytestreamsTransport implements Transport {
 
     @Override
     public InputStream getInputStream() throws IOException {
-        final var inputStream = new PipedInputStream();
+        // receiveData() writes into this pipe on the thread processing IQs. it has to hold a
+        // whole window so that thread does not block while the reader catches up
+        final var inputStream = new PipedInputStream(DEFAULT_BLOCK_SIZE * WINDOW_SIZE);
         this.pipedOutputStream.connect(inputStream);
         return inputStream;
     }
@@ -264,9 +288,10 @@ public class InbandBytestreamsTransport implements Transport {
 
         private int blockSize;
         private final PipedInputStream inputStream;
-        private final Semaphore semaphore = new Semaphore(3);
-        private final AtomicInteger sequencer = new AtomicInteger();
+        private final Semaphore semaphore = new Semaphore(WINDOW_SIZE);
+        private final ArrayDeque<Integer> inFlight = new ArrayDeque<>();
         private final AtomicBoolean isSending = new AtomicBoolean(true);
+        private int sequence = 0;
 
         private BlockSender(
                 XmppConnection xmppConnection,
@@ -294,7 +319,11 @@ public class InbandBytestreamsTransport implements Transport {
                     this.semaphore.acquire();
                     final var block = new byte[count];
                     System.arraycopy(buffer, 0, block, 0, block.length);
-                    sendIbbBlock(sequencer.getAndIncrement(), block);
+                    synchronized (this.inFlight) {
+                        this.inFlight.add(this.sequence);
+                    }
+                    sendIbbBlock(this.sequence, block);
+                    this.sequence = (this.sequence + 1) & SEQUENCE_MASK;
                 }
             } catch (final InterruptedException | InterruptedIOException e) {
                 if (isSending.get()) {
@@ -321,6 +350,9 @@ public class InbandBytestreamsTransport implements Transport {
                     new FutureCallback<Iq>() {
                         @Override
                         public void onSuccess(final Iq result) {
+                            if (!acknowledge(sequence)) {
+                                isSending.set(false);
+                            }
                             semaphore.release();
                         }
 
@@ -337,6 +369,24 @@ public class InbandBytestreamsTransport implements Transport {
                     MoreExecutors.directExecutor());
         }
 
+        /**
+         * @return false if a block got acknowledged before an older one. the peer is then no
+         *     longer processing the blocks in order and we stop sending
+         */
+        private boolean acknowledge(final int sequence) {
+            final Integer oldest;
+            synchronized (this.inFlight) {
+                oldest = this.inFlight.poll();
+            }
+            if (oldest == null || oldest != sequence) {
+                Log.w(
+                        Config.LOGTAG,
+                        "ibb block #" + sequence + " acknowledged before #" + oldest);
+                return false;
+            }
+            return true;
+        }
+
         @Override
         public void close() {
             this.isSending.set(false);
@@ -2,7 +2,6 @@ package eu.siacs.conversations.xmpp.jingle.transports;
 
 import android.util.Log;
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import com.google.common.base.Joiner;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Optional;
@@ -13,7 +12,6 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Ordering;
 import com.google.common.hash.Hashing;
-import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -37,11 +35,9 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.SocketException;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.ArrayList;
@@ -53,8 +49,6 @@ import java.util.Locale;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SocksByteStreamsTransport implements Transport {
@@ -122,7 +116,7 @@ public class SocksByteStreamsTransport implements Transport {
 
         this.connectionProvider =
                 new ConnectionProvider(id.account.getJid(), ourDestination, useTor, useRelays);
-        new Thread(connectionProvider).start();
+        connectionProvider.listen();
         this.ourProxyConnection = getOurProxyConnection(ourDestination);
         setTheirCandidates(theirCandidates);
     }
@@ -457,10 +451,7 @@ public class SocksByteStreamsTransport implements Transport {
         }
     }
 
-    private static class ConnectionProvider implements Runnable {
-
-        private final ExecutorService clientConnectionExecutorService =
-                Executors.newFixedThreadPool(4);
+    private static class ConnectionProvider {
 
         private final ImmutableList<Candidate> candidates;
 
@@ -468,7 +459,7 @@ public class SocksByteStreamsTransport implements Transport {
 
         private final AtomicBoolean acceptingConnections = new AtomicBoolean(true);
 
-        private ServerSocket serverSocket;
+        private SocksServer.Listener listener;
 
         private final String destination;
 
@@ -504,128 +495,47 @@ public class SocksByteStreamsTransport implements Transport {
             this.candidates = candidateBuilder.build();
         }
 
-        @Override
-        public void run() {
+        private void listen() {
             if (this.candidates.isEmpty()) {
-                Log.d(Config.LOGTAG, "no direct candidates. stopping ConnectionProvider");
+                Log.d(Config.LOGTAG, "no direct candidates. not listening for connections");
                 return;
             }
-            try (final ServerSocket serverSocket = new ServerSocket(this.port)) {
-                this.serverSocket = serverSocket;
-                while (acceptingConnections.get()) {
-                    final Socket clientSocket;
-                    try {
-                        clientSocket = serverSocket.accept();
-                    } catch (final SocketException ignored) {
-                        Log.d(Config.LOGTAG, "server socket has been closed.");
+            try {
+                final var listener =
+                        SocksServer.getInstance()
+                                .listen(this.port, this.destination, this::onPeerConnected);
+                synchronized (this) {
+                    if (acceptingConnections.get()) {
+                        this.listener = listener;
                         return;
                     }
-                    clientConnectionExecutorService.execute(
-                            () -> acceptClientConnection(clientSocket));
                 }
+                listener.close();
             } catch (final IOException e) {
                 Log.d(Config.LOGTAG, "could not create server socket", e);
             }
         }
 
-        private void acceptClientConnection(final Socket socket) {
+        private void onPeerConnected(final Socket socket) {
             final var localAddress = socket.getLocalAddress();
             final var hostAddress = localAddress == null ? null : localAddress.getHostAddress();
             final var candidate =
                     Iterables.tryFind(this.candidates, c -> c.host.equals(hostAddress));
             if (candidate.isPresent()) {
-                acceptingConnections(socket, candidate.get());
-
+                synchronized (this.peerConnections) {
+                    peerConnections.add(new Connection(candidate.get(), socket));
+                }
+                Log.d(
+                        Config.LOGTAG,
+                        socket.getRemoteSocketAddress()
+                                + " successfully connected to "
+                                + candidate.get());
             } else {
                 closeSocket(socket);
                 Log.d(Config.LOGTAG, "no local candidate found for connection on " + hostAddress);
             }
         }
 
-        private void acceptingConnections(final Socket socket, final Candidate candidate) {
-            final var remoteAddress = socket.getRemoteSocketAddress();
-            Log.d(
-                    Config.LOGTAG,
-                    "accepted client connection from " + remoteAddress + " to " + candidate);
-            try {
-                socket.setSoTimeout(3000);
-                final byte[] authBegin = new byte[2];
-                final InputStream inputStream = socket.getInputStream();
-                final OutputStream outputStream = socket.getOutputStream();
-                ByteStreams.readFully(inputStream, authBegin);
-                if (authBegin[0] != 0x5) {
-                    socket.close();
-                }
-                final short methodCount = authBegin[1];
-                final byte[] methods = new byte[methodCount];
-                ByteStreams.readFully(inputStream, methods);
-                if (SocksSocketFactory.contains((byte) 0x00, methods)) {
-                    outputStream.write(new byte[] {0x05, 0x00});
-                } else {
-                    outputStream.write(new byte[] {0x05, (byte) 0xff});
-                }
-                final byte[] connectCommand = new byte[4];
-                ByteStreams.readFully(inputStream, connectCommand);
-                if (connectCommand[0] == 0x05
-                        && connectCommand[1] == 0x01
-                        && connectCommand[3] == 0x03) {
-                    int destinationCount = inputStream.read();
-                    final byte[] destination = new byte[destinationCount];
-                    ByteStreams.readFully(inputStream, destination);
-                    final byte[] port = new byte[2];
-                    ByteStreams.readFully(inputStream, port);
-                    final String receivedDestination = new String(destination);
-                    final ByteBuffer response = ByteBuffer.allocate(7 + destination.length);
-                    final byte[] responseHeader;
-                    final boolean success;
-                    if (receivedDestination.equals(this.destination)) {
-                        responseHeader = new byte[] {0x05, 0x00, 0x00, 0x03};
-                        synchronized (this.peerConnections) {
-                            peerConnections.add(new Connection(candidate, socket));
-                        }
-                        success = true;
-                    } else {
-                        Log.d(
-                                Config.LOGTAG,
-                                "destination mismatch. received "
-                                        + receivedDestination
-                                        + " (expected "
-                                        + this.destination
-                                        + ")");
-                        responseHeader = new byte[] {0x05, 0x04, 0x00, 0x03};
-                        success = false;
-                    }
-                    response.put(responseHeader);
-                    response.put((byte) destination.length);
-                    response.put(destination);
-                    response.put(port);
-                    outputStream.write(response.array());
-                    outputStream.flush();
-                    if (success) {
-                        Log.d(
-                                Config.LOGTAG,
-                                remoteAddress + " successfully connected to " + candidate);
-                    } else {
-                        closeSocket(socket);
-                    }
-                }
-            } catch (final IOException e) {
-                Log.d(Config.LOGTAG, "failed to accept client connection to " + candidate, e);
-                closeSocket(socket);
-            }
-        }
-
-        private static void closeServerSocket(@Nullable final ServerSocket serverSocket) {
-            if (serverSocket == null) {
-                return;
-            }
-            try {
-                serverSocket.close();
-            } catch (final IOException ignored) {
-
-            }
-        }
-
         public Optional<Connection> findPeerConnection(String cid) {
             synchronized (this.peerConnections) {
                 return Iterables.tryFind(
@@ -634,8 +544,14 @@ public class SocksByteStreamsTransport implements Transport {
         }
 
         public void close() {
-            this.acceptingConnections.set(false); // we have probably done this earlier already
-            closeServerSocket(this.serverSocket);
+            final SocksServer.Listener listener;
+            synchronized (this) {
+                this.acceptingConnections.set(false);
+                listener = this.listener;
+            }
+            if (listener != null) {
+                listener.close();
+            }
             synchronized (this.peerConnections) {
                 closeConnections(this.peerConnections);
                 this.peerConnections.clear();
@@ -0,0 +1,401 @@
+package eu.siacs.conversations.xmpp.jingle.transports;
+
+import android.util.Log;
+import eu.siacs.conversations.Config;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * The server side of direct SOCKS5 bytestreams. All listeners share a single thread that accepts
+ * connections and performs the (tiny) SOCKS5 handshakes on non-blocking channels. Only after a
+ * peer requested the expected destination is the socket switched to blocking mode and handed
+ * over. The thread terminates once the last listener has been closed.
+ */
+final class SocksServer {
+
+    private static final long HANDSHAKE_TIMEOUT = 3000;
+
+    private static final SocksServer INSTANCE = new SocksServer();
+
+    private final ArrayDeque<Listener> pending = new ArrayDeque<>();
+    private Selector selector;
+    private Thread thread;
+
+    private SocksServer() {}
+
+    static SocksServer getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param destination the SHA-1 hash a peer is expected to request
+     * @param consumer receives the blocking sockets of peers that completed the handshake. It is
+     *     called on the shared thread and must not block
+     */
+    Listener listen(final int port, final String destination, final Consumer<Socket> consumer)
+            throws IOException {
+        final var channel = ServerSocketChannel.open();
+        try {
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+        final var listener = new Listener(channel, destination, consumer);
+        synchronized (this) {
+            if (this.selector == null) {
+                this.selector = Selector.open();
+            }
+            this.pending.add(listener);
+            if (this.thread == null) {
+                this.thread = new Thread(this::run, "socks-server");
+                this.thread.setDaemon(true);
+                this.thread.start();
+            } else {
+                this.selector.wakeup();
+            }
+        }
+        return listener;
+    }
+
+    private void run() {
+        try {
+            loop();
+        } finally {
+            synchronized (this) {
+                // a regular exit already cleared the thread; anything else must not leave listen()
+                // waking up a selector nobody is selecting on
+                if (this.thread == Thread.currentThread()) {
+                    Log.e(Config.LOGTAG, "socks server thread terminated unexpectedly");
+                    this.thread = null;
+                }
+            }
+        }
+    }
+
+    private void loop() {
+        final Selector selector;
+        synchronized (this) {
+            selector = this.selector;
+        }
+        final var handovers = new ArrayList<SelectionKey>();
+        while (true) {
+            try {
+                selector.select(HANDSHAKE_TIMEOUT);
+            } catch (final IOException e) {
+                Log.w(Config.LOGTAG, "socks server could not select", e);
+            }
+            registerPending(selector);
+            final Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                final var key = iterator.next();
+                iterator.remove();
+                try {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept(key);
+                    } else if (key.isReadable()) {
+                        read(key, handovers);
+                    } else if (key.isWritable()) {
+                        write(key, handovers);
+                    }
+                } catch (final IOException | RuntimeException e) {
+                    Log.d(Config.LOGTAG, "failed to accept client connection", e);
+                    closeQuietly(key.channel());
+                }
+            }
+            handOver(selector, handovers);
+            expireHandshakes(selector);
+            synchronized (this) {
+                if (selector.keys().isEmpty() && this.pending.isEmpty()) {
+                    this.thread = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    private void registerPending(final Selector selector) {
+        while (true) {
+            final Listener listener;
+            synchronized (this) {
+                listener = this.pending.poll();
+            }
+            if (listener == null) {
+                return;
+            }
+            try {
+                listener.channel.register(selector, SelectionKey.OP_ACCEPT, listener);
+            } catch (final IOException e) {
+                // the listener has been closed before we got to register it
+                closeQuietly(listener.channel);
+            }
+        }
+    }
+
+    private static void accept(final SelectionKey key) throws IOException {
+        final var listener = (Listener) key.attachment();
+        final SocketChannel channel = listener.channel.accept();
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.configureBlocking(false);
+            channel.register(key.selector(), SelectionKey.OP_READ, new Handshake(listener));
+        } catch (final IOException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+        Log.d(Config.LOGTAG, "accepted client connection from " + channel.getRemoteAddress());
+    }
+
+    private static void read(final SelectionKey key, final ArrayList<SelectionKey> handovers)
+            throws IOException {
+        final var channel = (SocketChannel) key.channel();
+        final var handshake = (Handshake) key.attachment();
+        if (channel.read(handshake.input) < 0) {
+            throw new EOFException("client closed connection during handshake");
+        }
+        process(key, handshake, handovers);
+    }
+
+    private static void process(
+            final SelectionKey key,
+            final Handshake handshake,
+            final ArrayList<SelectionKey> handovers)
+            throws IOException {
+        handshake.input.flip();
+        try {
+            handshake.output = handshake.parse();
+        } finally {
+            handshake.input.compact();
+        }
+        if (handshake.output != null) {
+            key.interestOps(SelectionKey.OP_WRITE);
+            write(key, handovers);
+        } else if (!handshake.input.hasRemaining()) {
+            throw new ProtocolException("SOCKS5 handshake exceeds maximum length");
+        }
+    }
+
+    private static void write(final SelectionKey key, final ArrayList<SelectionKey> handovers)
+            throws IOException {
+        final var channel = (SocketChannel) key.channel();
+        final var handshake = (Handshake) key.attachment();
+        channel.write(handshake.output);
+        if (handshake.output.hasRemaining()) {
+            return;
+        }
+        handshake.output = null;
+        switch (handshake.state) {
+            case REQUEST -> {
+                key.interestOps(SelectionKey.OP_READ);
+                // the client might have sent its request along with the greeting
+                if (handshake.input.position() > 0) {
+                    process(key, handshake, handovers);
+                }
+            }
+            case CONNECTED -> handovers.add(key);
+            default -> closeQuietly(channel);
+        }
+    }
+
+    private static void handOver(final Selector selector, final ArrayList<SelectionKey> handovers) {
+        if (handovers.isEmpty()) {
+            return;
+        }
+        for (final var key : handovers) {
+            key.cancel();
+        }
+        try {
+            // deregisters the cancelled keys. a channel can not be made blocking before that
+            selector.selectNow();
+        } catch (final IOException e) {
+            Log.w(Config.LOGTAG, "socks server could not select", e);
+        }
+        for (final var key : handovers) {
+            final var channel = (SocketChannel) key.channel();
+            final var handshake = (Handshake) key.attachment();
+            try {
+                channel.configureBlocking(true);
+            } catch (final IOException e) {
+                Log.d(Config.LOGTAG, "could not hand over client connection", e);
+                closeQuietly(channel);
+                continue;
+            }
+            try {
+                handshake.listener.consumer.accept(channel.socket());
+            } catch (final RuntimeException e) {
+                Log.w(Config.LOGTAG, "could not hand over client connection", e);
+                closeQuietly(channel);
+            }
+        }
+        handovers.clear();
+    }
+
+    private static void expireHandshakes(final Selector selector) {
+        final long now = System.currentTimeMillis();
+        for (final var key : selector.keys()) {
+            if (key.attachment() instanceof Handshake handshake && handshake.deadline < now) {
+                Log.d(Config.LOGTAG, "SOCKS5 handshake timed out");
+                closeQuietly(key.channel());
+            }
+        }
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (final IOException ignored) {
+
+        }
+    }
+
+    final class Listener implements Closeable {
+
+        private final ServerSocketChannel channel;
+        private final String destination;
+        private final Consumer<Socket> consumer;
+
+        private Listener(
+                final ServerSocketChannel channel,
+                final String destination,
+                final Consumer<Socket> consumer) {
+            this.channel = channel;
+            this.destination = destination;
+            this.consumer = consumer;
+        }
+
+        int getPort() {
+            return this.channel.socket().getLocalPort();
+        }
+
+        @Override
+        public void close() {
+            closeQuietly(this.channel);
+            synchronized (SocksServer.this) {
+                // lets the thread release the port and terminate if this was the last listener
+                if (selector != null) {
+                    selector.wakeup();
+                }
+            }
+        }
+    }
+
+    private enum State {
+        GREETING,
+        REQUEST,
+        CONNECTED,
+        REJECTED
+    }
+
+    private static final class Handshake {
+
+        // greeting (up to 257 bytes) plus a request with a domain name (up to 262 bytes)
+        private final ByteBuffer input = ByteBuffer.allocate(519);
+        private final Listener listener;
+        private final long deadline = System.currentTimeMillis() + HANDSHAKE_TIMEOUT;
+        private ByteBuffer output;
+        private State state = State.GREETING;
+
+        private Handshake(final Listener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * @return the response to a complete greeting or request or null if more input is needed
+         */
+        private ByteBuffer parse() throws IOException {
+            return switch (state) {
+                case GREETING -> parseGreeting();
+                case REQUEST -> parseRequest();
+                default -> throw new ProtocolException("unexpected input after handshake");
+            };
+        }
+
+        private ByteBuffer parseGreeting() throws IOException {
+            if (input.remaining() < 2) {
+                return null;
+            }
+            if (input.get(input.position()) != 0x05) {
+                throw new ProtocolException("unsupported SOCKS version");
+            }
+            final int methodCount = input.get(input.position() + 1) & 0xff;
+            if (input.remaining() < 2 + methodCount) {
+                return null;
+            }
+            input.position(input.position() + 2);
+            boolean noAuthentication = false;
+            for (int i = 0; i < methodCount; ++i) {
+                noAuthentication |= input.get() == 0x00;
+            }
+            if (noAuthentication) {
+                this.state = State.REQUEST;
+                return ByteBuffer.wrap(new byte[] {0x05, 0x00});
+            } else {
+                this.state = State.REJECTED;
+                return ByteBuffer.wrap(new byte[] {0x05, (byte) 0xff});
+            }
+        }
+
+        private ByteBuffer parseRequest() throws IOException {
+            if (input.remaining() < 5) {
+                return null;
+            }
+            final int start = input.position();
+            if (input.get(start) != 0x05
+                    || input.get(start + 1) != 0x01
+                    || input.get(start + 3) != 0x03) {
+                throw new ProtocolException("unsupported SOCKS5 request");
+            }
+            final int length = input.get(start + 4) & 0xff;
+            if (input.remaining() < 5 + length + 2) {
+                return null;
+            }
+            input.position(start + 5);
+            final byte[] destination = new byte[length];
+            input.get(destination);
+            final short port = input.getShort();
+            final var receivedDestination = new String(destination, StandardCharsets.UTF_8);
+            final byte status;
+            if (receivedDestination.equals(listener.destination)) {
+                this.state = State.CONNECTED;
+                status = 0x00;
+            } else {
+                Log.d(
+                        Config.LOGTAG,
+                        "destination mismatch. received "
+                                + receivedDestination
+                                + " (expected "
+                                + listener.destination
+                                + ")");
+                this.state = State.REJECTED;
+                status = 0x04;
+            }
+            final var response = ByteBuffer.allocate(7 + length);
+            response.put(new byte[] {0x05, status, 0x00, 0x03});
+            response.put((byte) length);
+            response.put(destination);
+            response.putShort(port);
+            response.flip();
+            return response;
+        }
+    }
+}
@@ -254,6 +254,7 @@ public class MessageArchiveManager extends AbstractManager {
     }
 
     private void finalizeQuery(final Query query, boolean done) {
+        getDatabase().commitPendingMessages();
         synchronized (this.queries) {
             if (!this.queries.remove(query)) {
                 throw new IllegalStateException("Unable to remove query from queries");
@@ -1,5 +1,6 @@
 package eu.siacs.conversations.xmpp.manager;
 
+import android.content.ContentValues;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -20,6 +21,7 @@ import im.conversations.android.xmpp.model.error.Condition;
 import im.conversations.android.xmpp.model.roster.Item;
 import im.conversations.android.xmpp.model.roster.Query;
 import im.conversations.android.xmpp.model.stanza.Iq;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -32,6 +34,8 @@ public class RosterManager extends AbstractManager implements Roster {
             new ReplacingSerialSingleThreadExecutor(RosterManager.class.getName());
 
     private final Map<Jid, Contact> contacts = new HashMap<>();
+    // what we last wrote to (or read from) the database; used to only write changed contacts
+    private final Map<Jid, ContentValues> persisted = new HashMap<>();
     private String version;
 
     private final XmppConnectionService service;
@@ -242,9 +246,16 @@ public class RosterManager extends AbstractManager implements Roster {
     }
 
     public void restore() {
+        final var roster = getDatabase().readRoster(getAccount());
         synchronized (this.contacts) {
             this.contacts.clear();
-            this.contacts.putAll(getDatabase().readRoster(getAccount()));
+            this.contacts.putAll(roster);
+        }
+        synchronized (this.persisted) {
+            this.persisted.clear();
+            for (final Map.Entry<Jid, Contact> entry : roster.entrySet()) {
+                this.persisted.put(entry.getKey(), entry.getValue().getContentValues());
+            }
         }
     }
 
@@ -260,7 +271,37 @@ public class RosterManager extends AbstractManager implements Roster {
             contacts = ImmutableList.copyOf(this.contacts.values());
             version = this.version;
         }
-        getDatabase().writeRoster(account, version, contacts);
+        synchronized (this.persisted) {
+            final Map<Jid, ContentValues> changed = new HashMap<>();
+            final List<Jid> removed = new ArrayList<>();
+            for (final Contact contact : contacts) {
+                final Jid address = contact.getAddress();
+                if (requiresPersistence(contact)) {
+                    final ContentValues contentValues = contact.getContentValues();
+                    if (!contentValues.equals(this.persisted.get(address))) {
+                        changed.put(address, contentValues);
+                    }
+                } else if (this.persisted.containsKey(address)) {
+                    removed.add(address);
+                }
+            }
+            if (changed.isEmpty()
+                    && removed.isEmpty()
+                    && Objects.equals(version, account.getRosterVersion())) {
+                return;
+            }
+            getDatabase().writeRoster(account, version, changed.values(), removed);
+            this.persisted.putAll(changed);
+            for (final Jid address : removed) {
+                this.persisted.remove(address);
+            }
+        }
+    }
+
+    private static boolean requiresPersistence(final Contact contact) {
+        return contact.getOption(Contact.Options.IN_ROSTER)
+                || contact.hasAvatarOrPresenceName()
+                || contact.getOption(Contact.Options.SYNCED_VIA_OTHER);
     }
 
     public void syncDirtyContacts() {
@@ -1,7 +1,6 @@
 package im.conversations.android.xmpp;
 
 import android.util.Log;
-import com.google.common.collect.ImmutableMap;
 import eu.siacs.conversations.Config;
 import eu.siacs.conversations.xml.Element;
 import eu.siacs.conversations.xml.Namespace;
@@ -13,59 +12,61 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.util.Arrays;
-import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
 
 public class StreamElementWriter extends BufferedWriter {
 
-    private static final Map<Character, String> ENTITIES =
-            new ImmutableMap.Builder<Character, String>()
-                    .put('"', "quot")
-                    .put('\'', "apos")
-                    .put('<', "lt")
-                    .put('>', "gt")
-                    .put('&', "amp")
-                    .build();
-    private static final Collection<Character> ALLOWED_CONTROL_CHARS =
-            Arrays.asList('\n', '\t', '\r');
-
     public StreamElementWriter(final OutputStream outputStream) {
         super(new OutputStreamWriter(outputStream));
     }
 
     public void write(final Tag tag, final String namespace) throws IOException {
-        this.write('<');
         if (tag.getType() == Tag.Type.END) {
-            this.write('/');
+            this.writeEndTag(tag.getName());
+        } else {
+            this.writeStartTag(
+                    tag.getName(),
+                    tag.getNamespace(),
+                    tag.getAttributes(),
+                    namespace,
+                    tag.getType() == Tag.Type.EMPTY);
         }
+    }
 
-        this.write(tag.getName());
-
-        if (tag.getType() == Tag.Type.START || tag.getType() == Tag.Type.EMPTY) {
-            if (tag.getNamespace() != null && !Objects.equals(tag.getNamespace(), namespace)) {
-                this.write(' ');
-                this.write("xmlns=");
-                this.write('"');
-                this.write(tag.getNamespace());
-                this.write('"');
-            }
-            for (final var entry : tag.getAttributes().entrySet()) {
-                this.write(' ');
-                this.write(entry.getKey());
-                this.write('=');
-                this.write('"');
-                this.writeEncoded(entry.getValue());
-                this.write('"');
-            }
+    private void writeStartTag(
+            final String name,
+            final String namespace,
+            final Map<String, String> attributes,
+            final String parentNamespace,
+            final boolean empty)
+            throws IOException {
+        this.write('<');
+        this.write(name);
+        if (namespace != null && !Objects.equals(namespace, parentNamespace)) {
+            this.write(" xmlns=\"");
+            this.write(namespace);
+            this.write('"');
+        }
+        for (final var entry : attributes.entrySet()) {
+            this.write(' ');
+            this.write(entry.getKey());
+            this.write("=\"");
+            this.writeEncoded(entry.getValue());
+            this.write('"');
         }
-        if (tag.getType() == Tag.Type.EMPTY) {
+        if (empty) {
             this.write('/');
         }
         this.write('>');
     }
 
+    private void writeEndTag(final String name) throws IOException {
+        this.write("</");
+        this.write(name);
+        this.write('>');
+    }
+
     public void write(final StreamElement streamElement) throws IOException {
         this.write(streamElement, Namespace.JABBER_CLIENT);
     }
@@ -78,13 +79,19 @@ public class StreamElementWriter extends BufferedWriter {
         final var content = element.getContent();
         final var children = element.getChildren();
         if (content == null && children.isEmpty()) {
-            final Tag emptyTag = Tag.empty(element.getName(), element.getNamespace());
-            emptyTag.setAttributes(element.getAttributes());
-            this.write(emptyTag, namespace);
+            this.writeStartTag(
+                    element.getName(),
+                    element.getNamespace(),
+                    element.getAttributes(),
+                    namespace,
+                    true);
         } else {
-            final Tag startTag = Tag.start(element.getName(), element.getNamespace());
-            startTag.setAttributes(element.getAttributes());
-            this.write(startTag, namespace);
+            this.writeStartTag(
+                    element.getName(),
+                    element.getNamespace(),
+                    element.getAttributes(),
+                    namespace,
+                    false);
             if (content != null) {
                 this.writeEncoded(content);
             } else {
@@ -92,28 +99,45 @@ public class StreamElementWriter extends BufferedWriter {
                     this.write(child, element.getNamespace());
                 }
             }
-            final Tag endTag = Tag.end(element.getName());
-            this.write(endTag, namespace);
+            this.writeEndTag(element.getName());
         }
     }
 
+    /**
+     * Writes runs of characters that do not need escaping in one go and only interrupts them
+     * for entities and (dropped) control characters
+     */
     private void writeEncoded(final String text) throws IOException {
-        for (final var c : text.toCharArray()) {
-            if (ALLOWED_CONTROL_CHARS.contains(c)) {
-                this.write(c);
-            } else if (Character.isISOControl(c)) {
-                Log.e(Config.LOGTAG, "invalid control chars in: " + text);
-            } else {
-                final var entity = ENTITIES.get(c);
-                if (entity != null) {
-                    this.write('&');
-                    this.write(entity);
-                    this.write(';');
-                } else {
-                    this.write(c);
+        final int length = text.length();
+        int clean = 0;
+        for (int i = 0; i < length; ++i) {
+            final char c = text.charAt(i);
+            final String entity;
+            switch (c) {
+                case '\n', '\t', '\r' -> {
+                    continue;
                 }
+                case '"' -> entity = "&quot;";
+                case '\'' -> entity = "&apos;";
+                case '<' -> entity = "&lt;";
+                case '>' -> entity = "&gt;";
+                case '&' -> entity = "&amp;";
+                default -> {
+                    if (Character.isISOControl(c)) {
+                        Log.e(Config.LOGTAG, "invalid control chars in: " + text);
+                        entity = null;
+                    } else {
+                        continue;
+                    }
+                }
+            }
+            this.write(text, clean, i - clean);
+            if (entity != null) {
+                this.write(entity);
             }
+            clean = i + 1;
         }
+        this.write(text, clean, length - clean);
     }
 
     public static String asString(final Extension extension) throws IOException {
@@ -1,5 +1,6 @@
 package im.conversations.android.xmpp.model.ibb;
 
+import com.google.common.base.Optional;
 import im.conversations.android.annotation.XmlElement;
 import im.conversations.android.xmpp.model.ByteContent;
 
@@ -13,4 +14,8 @@ public class Data extends InBandByteStream implements ByteContent {
     public void setSequence(int sequence) {
         this.setAttribute("seq", sequence);
     }
+
+    public Optional<Integer> getSequence() {
+        return this.getOptionalIntAttribute("seq");
+    }
 }
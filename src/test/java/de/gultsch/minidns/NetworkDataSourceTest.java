@@ -0,0 +1,134 @@
+package de.gultsch.minidns;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.minidns.dnsmessage.DnsMessage;
+import org.minidns.dnsmessage.Question;
+import org.minidns.record.Record;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.ConscryptMode;
+
+@RunWith(RobolectricTestRunner.class)
+@ConscryptMode(ConscryptMode.Mode.OFF)
+public class NetworkDataSourceTest {
+
+    private StubDnsServer stubDnsServer;
+
+    @Before
+    public void startStubDnsServer() throws IOException {
+        this.stubDnsServer = new StubDnsServer();
+    }
+
+    @After
+    public void stopStubDnsServer() throws IOException {
+        this.stubDnsServer.close();
+    }
+
+    @Test
+    public void identicalQuestionsAreCoalesced() throws Exception {
+        final var futures = new ArrayList<ListenableFuture<?>>();
+        for (int i = 0; i < 5; ++i) {
+            final var query = query("example.com", i);
+            futures.add(new NetworkDataSource().query(query, stubDnsServer.dnsServer()));
+        }
+        final List<?> results =
+                Futures.allAsList(futures).get(DNSSocket.QUERY_TIMEOUT, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(5, results.size());
+        Assert.assertEquals(1, stubDnsServer.queries.get());
+    }
+
+    @Test
+    public void queriesArePipelinedOverOneConnection() throws Exception {
+        final var futures = new ArrayList<ListenableFuture<?>>();
+        // exceeds the number of queries allowed in flight at the same time
+        for (int i = 0; i < 40; ++i) {
+            final var query = query("host" + i + ".example.com", i);
+            futures.add(new NetworkDataSource().query(query, stubDnsServer.dnsServer()));
+        }
+        final List<?> results =
+                Futures.allAsList(futures).get(DNSSocket.QUERY_TIMEOUT, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(40, results.size());
+        Assert.assertEquals(40, stubDnsServer.queries.get());
+        Assert.assertEquals(1, stubDnsServer.connections.get());
+    }
+
+    private static DnsMessage query(final String name, final int id) {
+        return DnsMessage.builder()
+                .setQuestion(new Question(name, Record.TYPE.A))
+                .setId(id)
+                .setRecursionDesired(true)
+                .build();
+    }
+
+    /** Answers every query over TCP with an empty response after a short delay. */
+    private static class StubDnsServer implements AutoCloseable {
+
+        private final ServerSocket serverSocket =
+                new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        private final AtomicInteger connections = new AtomicInteger();
+        private final AtomicInteger queries = new AtomicInteger();
+
+        private StubDnsServer() throws IOException {
+            new Thread(this::accept).start();
+        }
+
+        private DNSServer dnsServer() {
+            return new DNSServer(
+                    InetAddress.getLoopbackAddress(), serverSocket.getLocalPort(), Transport.TCP);
+        }
+
+        private void accept() {
+            try {
+                while (!serverSocket.isClosed()) {
+                    final Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    new Thread(() -> answer(socket)).start();
+                }
+            } catch (final IOException e) {
+                // server socket closed
+            }
+        }
+
+        private void answer(final Socket socket) {
+            try (socket) {
+                final var inputStream = new DataInputStream(socket.getInputStream());
+                final var outputStream = new DataOutputStream(socket.getOutputStream());
+                while (true) {
+                    final byte[] data = new byte[inputStream.readUnsignedShort()];
+                    inputStream.readFully(data);
+                    final DnsMessage query = new DnsMessage(data);
+                    queries.incrementAndGet();
+                    Thread.sleep(20);
+                    final DnsMessage response =
+                            query.getResponseBuilder(DnsMessage.RESPONSE_CODE.NO_ERROR).build();
+                    synchronized (outputStream) {
+                        response.writeTo(outputStream);
+                        outputStream.flush();
+                    }
+                }
+            } catch (final IOException | InterruptedException e) {
+                // connection closed
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package eu.siacs.conversations.entities;
+
+import eu.siacs.conversations.xmpp.Jid;
+import im.conversations.android.model.Bookmark;
+import im.conversations.android.xmpp.model.muc.Affiliation;
+import im.conversations.android.xmpp.model.muc.Role;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.ConscryptMode;
+
+@RunWith(RobolectricTestRunner.class)
+@ConscryptMode(ConscryptMode.Mode.OFF)
+public class MucOptionsTest {
+
+    private static final Jid ROOM = Jid.of("room@conference.example.com");
+
+    private MucOptions mucOptions;
+
+    @Before
+    public void setUp() {
+        final var account = new Account(Jid.of("juliet@example.com"), "secret");
+        final var conversation =
+                new Conversation("room", account, ROOM, Conversational.MODE_MULTI) {
+                    @Override
+                    public Bookmark getBookmark() {
+                        return null;
+                    }
+                };
+        this.mucOptions = new MucOptions(conversation);
+    }
+
+    @Test
+    public void occupantWithTwoDevices() {
+        final var phone = participant("romeo", "occupant-romeo");
+        final var laptop = participant("romeo (laptop)", "occupant-romeo");
+        mucOptions.updateUser(phone);
+        mucOptions.updateUser(laptop);
+        Assert.assertEquals(1, mucOptions.getUsersPreview(10).size());
+
+        // the device that joined last leaves; the other one has to take over the index entry
+        mucOptions.deleteUser(laptop.getFullJid());
+        Assert.assertSame(phone, mucOptions.getUser("occupant-romeo"));
+        Assert.assertEquals(1, mucOptions.getUsersPreview(10).size());
+
+        // and once it rejoins and the first device leaves, the entry moves back
+        mucOptions.updateUser(laptop);
+        mucOptions.deleteUser(phone.getFullJid());
+        Assert.assertSame(laptop, mucOptions.getUser("occupant-romeo"));
+
+        mucOptions.deleteUser(laptop.getFullJid());
+        Assert.assertNull(mucOptions.getUser("occupant-romeo"));
+        Assert.assertTrue(mucOptions.getUsersPreview(10).isEmpty());
+    }
+
+    private MucOptions.User participant(final String nick, final String occupantId) {
+        return new MucOptions.User(
+                mucOptions,
+                ROOM.withResource(nick),
+                null,
+                occupantId,
+                Role.PARTICIPANT,
+                Affiliation.NONE);
+    }
+}
@@ -1,5 +1,8 @@
 package eu.siacs.conversations.utils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -54,4 +57,16 @@ public class EmoticonsTest {
     public void thumbsUpAndA() {
         Assert.assertFalse(Emoticons.isOnlyEmoji("\uD83D\uDC4Da"));
     }
+
+    @Test
+    public void findsLongestMatches() {
+        final List<Integer> ranges = new ArrayList<>();
+        Emoticons.findEmojis(
+                "hi \uD83D\uDC08\u200d\u2b1b and \uD83D\uDC4D!",
+                (start, end) -> {
+                    ranges.add(start);
+                    ranges.add(end);
+                });
+        Assert.assertEquals(Arrays.asList(3, 7, 12, 14), ranges);
+    }
 }
@@ -0,0 +1,62 @@
+package eu.siacs.conversations.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FtsUtilsTest {
+
+    private static final int BODY = 1;
+
+    @Test
+    public void matchString() {
+        Assert.assertEquals(
+                "hello* OR world*",
+                FtsUtils.toMatchString(FtsUtils.parse("hello or \"world\"")));
+    }
+
+    @Test
+    public void moreHitsScoreHigher() {
+        final double once = FtsUtils.bm25(matchinfo(1000, 10, 10, 1, 50), BODY);
+        final double twice = FtsUtils.bm25(matchinfo(1000, 10, 10, 2, 50), BODY);
+        Assert.assertTrue(twice > once);
+    }
+
+    @Test
+    public void shorterRowsScoreHigher() {
+        final double shorter = FtsUtils.bm25(matchinfo(1000, 10, 5, 1, 50), BODY);
+        final double longer = FtsUtils.bm25(matchinfo(1000, 10, 20, 1, 50), BODY);
+        Assert.assertTrue(shorter > longer);
+    }
+
+    @Test
+    public void rareTermsScoreHigher() {
+        final double rare = FtsUtils.bm25(matchinfo(1000, 10, 10, 1, 5), BODY);
+        final double common = FtsUtils.bm25(matchinfo(1000, 10, 10, 1, 900), BODY);
+        Assert.assertTrue(rare > common);
+        Assert.assertTrue(common > 0);
+    }
+
+    @Test
+    public void noHits() {
+        Assert.assertEquals(0, FtsUtils.bm25(matchinfo(1000, 10, 10, 0, 50), BODY), 0);
+    }
+
+    /** matchinfo 'pcnalx' for a single phrase over the columns uuid (not indexed) and body */
+    private static byte[] matchinfo(
+            final int rows,
+            final int averageLength,
+            final int length,
+            final int hits,
+            final int documents) {
+        final int[] values = {
+            1, 2, rows, 0, averageLength, 0, length, 0, 0, 0, hits, hits * 3, documents
+        };
+        final ByteBuffer buffer =
+                ByteBuffer.allocate(values.length * 4).order(ByteOrder.nativeOrder());
+        Arrays.stream(values).forEach(buffer::putInt);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,122 @@
+package eu.siacs.conversations.utils;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.io.CipherInputStream;
+import org.bouncycastle.crypto.modes.AEADBlockCipher;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelGZIPOutputStreamTest {
+
+    @Test
+    public void multipleBlocksAreReadAsOneStream() throws IOException {
+        final byte[] data = generate(ParallelGZIPOutputStream.BLOCK_SIZE * 5 + 1234);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final var outputStream = new ParallelGZIPOutputStream(compressed, 3)) {
+            outputStream.write(data, 0, 100);
+            outputStream.write(data[100]);
+            outputStream.write(data, 101, data.length - 101);
+        }
+        Assert.assertEquals(data.length, decompress(compressed.toByteArray()).length);
+        Assert.assertArrayEquals(data, decompress(compressed.toByteArray()));
+    }
+
+    @Test
+    public void roundTripThroughBackupCipher() throws IOException, GeneralSecurityException {
+        final byte[] data = generate(ParallelGZIPOutputStream.BLOCK_SIZE * 5 + 1234);
+        final byte[] key = new byte[32];
+        final byte[] iv = new byte[12];
+        final Random random = new Random(23);
+        random.nextBytes(key);
+        random.nextBytes(iv);
+        // encrypted and decrypted the same way the backup export and import are
+        final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(
+                Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(128, iv));
+        final ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        try (final var outputStream =
+                new ParallelGZIPOutputStream(new CipherOutputStream(encrypted, cipher), 3)) {
+            outputStream.write(data);
+        }
+        final AEADBlockCipher decryptionCipher = GCMBlockCipher.newInstance(AESEngine.newInstance());
+        decryptionCipher.init(false, new AEADParameters(new KeyParameter(key), 128, iv));
+        try (final var inputStream =
+                new GZIPInputStream(
+                        trickle(
+                                new CipherInputStream(
+                                        new ByteArrayInputStream(encrypted.toByteArray()),
+                                        decryptionCipher)))) {
+            Assert.assertArrayEquals(data, ByteStreams.toByteArray(inputStream));
+        }
+    }
+
+    @Test
+    public void flushKeepsSingleMember() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final var outputStream = new ParallelGZIPOutputStream(compressed, 2)) {
+            outputStream.write("hello ".getBytes());
+            outputStream.flush();
+            Assert.assertTrue(compressed.size() > 0);
+            outputStream.write("world".getBytes());
+        }
+        Assert.assertEquals("hello world", new String(decompress(compressed.toByteArray())));
+    }
+
+    @Test
+    public void emptyStream() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ParallelGZIPOutputStream(compressed, 2).close();
+        Assert.assertEquals(0, decompress(compressed.toByteArray()).length);
+    }
+
+    /**
+     * Returns one byte per read and reports nothing as available. GZIPInputStream would not
+     * continue after the first of multiple members on such a stream.
+     */
+    private static InputStream trickle(final InputStream inputStream) {
+        return new FilterInputStream(inputStream) {
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                return super.read(b, off, Math.min(1, len));
+            }
+
+            @Override
+            public int available() {
+                return 0;
+            }
+        };
+    }
+
+    private static byte[] generate(final int length) {
+        final byte[] data = new byte[length];
+        final Random random = new Random(42);
+        for (int i = 0; i < data.length; ++i) {
+            // compressible but not trivially so
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    private static byte[] decompress(final byte[] compressed) throws IOException {
+        try (final var inputStream =
+                new GZIPInputStream(trickle(new ByteArrayInputStream(compressed)))) {
+            return ByteStreams.toByteArray(inputStream);
+        }
+    }
+}
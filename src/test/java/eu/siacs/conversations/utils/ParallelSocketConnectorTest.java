@@ -0,0 +1,49 @@
+package eu.siacs.conversations.utils;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelSocketConnectorTest {
+
+    private static final ParallelSocketConnector<Integer> CONNECTOR =
+            new ParallelSocketConnector<>(
+                    port -> new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                    5000,
+                    250);
+
+    @Test
+    public void skipsRefusedCandidate() throws Exception {
+        final int refused = unusedPort();
+        try (final ServerSocket listener = listen()) {
+            final int port = listener.getLocalPort();
+            final var connection = CONNECTOR.connect(Arrays.asList(refused, port));
+            try {
+                Assert.assertEquals(port, (int) connection.candidate());
+                Assert.assertTrue(connection.socket().isConnected());
+            } finally {
+                connection.socket().close();
+            }
+        }
+    }
+
+    @Test(expected = ConnectException.class)
+    public void allCandidatesRefused() throws Exception {
+        CONNECTOR.connect(Arrays.asList(unusedPort(), unusedPort()));
+    }
+
+    private static ServerSocket listen() throws IOException {
+        return new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    }
+
+    private static int unusedPort() throws IOException {
+        try (final ServerSocket socket = listen()) {
+            return socket.getLocalPort();
+        }
+    }
+}
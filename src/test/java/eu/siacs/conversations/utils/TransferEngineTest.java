@@ -0,0 +1,59 @@
+package eu.siacs.conversations.utils;
+
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransferEngineTest {
+
+    @Test
+    public void copiesAndHashes() throws IOException {
+        final byte[] data = new byte[1_000_000];
+        new Random(23).nextBytes(data);
+        final var inputStream = new ByteArrayInputStream(data);
+        final var outputStream = new ByteArrayOutputStream();
+        final var sha1 = Hashing.sha1().newHasher();
+        final var sha256 = Hashing.sha256().newHasher();
+        final long[] progress = new long[1];
+        final var statistics =
+                TransferEngine.transfer(
+                        inputStream,
+                        outputStream,
+                        data.length,
+                        Arrays.asList(sha1, sha256),
+                        count -> progress[0] += count);
+        Assert.assertArrayEquals(data, outputStream.toByteArray());
+        Assert.assertEquals(data.length, statistics.bytes());
+        Assert.assertEquals(data.length, progress[0]);
+        Assert.assertEquals(Hashing.sha1().hashBytes(data), sha1.hash());
+        Assert.assertEquals(Hashing.sha256().hashBytes(data), sha256.hash());
+    }
+
+    @Test
+    public void doesNotReadBeyondTotal() throws IOException {
+        final byte[] data = new byte[100_000];
+        final var inputStream = new ByteArrayInputStream(data);
+        final var outputStream = new ByteArrayOutputStream();
+        TransferEngine.transfer(
+                inputStream, outputStream, 70_000, Collections.emptyList(), count -> {});
+        Assert.assertEquals(70_000, outputStream.size());
+        Assert.assertEquals(30_000, inputStream.available());
+    }
+
+    @Test(expected = EOFException.class)
+    public void prematureEndOfStream() throws IOException {
+        TransferEngine.transfer(
+                new ByteArrayInputStream(new byte[10]),
+                new ByteArrayOutputStream(),
+                20,
+                Collections.emptyList(),
+                count -> {});
+    }
+}
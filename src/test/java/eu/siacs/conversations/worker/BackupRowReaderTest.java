@@ -0,0 +1,67 @@
+package eu.siacs.conversations.worker;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.ConscryptMode;
+
+@RunWith(RobolectricTestRunner.class)
+@ConscryptMode(ConscryptMode.Mode.OFF)
+public class BackupRowReaderTest {
+
+    @Test
+    public void readsAllRows() throws IOException {
+        final StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 10_000; ++i) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"table\":\"messages\",\"values\":{\"uuid\":\"")
+                    .append(i)
+                    .append("\",\"timeSent\":")
+                    .append(i)
+                    .append(",\"body\":null}}");
+        }
+        json.append(']');
+        int count = 0;
+        try (final BackupRowReader reader = reader(json.toString())) {
+            BackupRowReader.Row row;
+            while ((row = reader.next()) != null) {
+                Assert.assertEquals("messages", row.table());
+                Assert.assertEquals(String.valueOf(count), row.values().getAsString("uuid"));
+                Assert.assertEquals(count, (long) row.values().getAsLong("timeSent"));
+                Assert.assertNull(row.values().get("body"));
+                count++;
+            }
+            Assert.assertNull(reader.next());
+        }
+        Assert.assertEquals(10_000, count);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedBackupFails() throws IOException {
+        try (final BackupRowReader reader =
+                reader("[{\"table\":\"messages\",\"values\":{\"uuid\":\"1\"}},{\"table\":")) {
+            while (reader.next() != null) {
+                // consume
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void unexpectedColumnFails() throws IOException {
+        try (final BackupRowReader reader =
+                reader("[{\"table\":\"messages\",\"values\":{\"uuid; drop\":\"1\"}}]")) {
+            reader.next();
+        }
+    }
+
+    private static BackupRowReader reader(final String json) {
+        return new BackupRowReader(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,82 @@
+package eu.siacs.conversations.xmpp.jingle.transports;
+
+import com.google.common.io.ByteStreams;
+import eu.siacs.conversations.utils.SocksSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.ConscryptMode;
+
+@RunWith(RobolectricTestRunner.class)
+@ConscryptMode(ConscryptMode.Mode.OFF)
+public class SocksServerTest {
+
+    private static final String DESTINATION = "0123456789abcdef0123456789abcdef01234567";
+
+    @Test
+    public void handsOverConnections() throws Exception {
+        final BlockingQueue<Socket> accepted = new ArrayBlockingQueue<>(8);
+        try (final var listener =
+                SocksServer.getInstance().listen(0, DESTINATION, accepted::add)) {
+            for (int i = 0; i < 4; ++i) {
+                try (final Socket client = connect(listener.getPort())) {
+                    SocksSocketFactory.createSocksConnection(client, DESTINATION, 0);
+                    try (final Socket server = accepted.poll(5, TimeUnit.SECONDS)) {
+                        Assert.assertNotNull(server);
+                        client.getOutputStream().write(new byte[] {1, 2, 3});
+                        final byte[] buffer = new byte[3];
+                        ByteStreams.readFully(server.getInputStream(), buffer);
+                        Assert.assertArrayEquals(new byte[] {1, 2, 3}, buffer);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsWrongDestination() throws Exception {
+        final BlockingQueue<Socket> accepted = new ArrayBlockingQueue<>(1);
+        try (final var listener =
+                SocksServer.getInstance().listen(0, DESTINATION, accepted::add)) {
+            try (final Socket client = connect(listener.getPort())) {
+                SocksSocketFactory.createSocksConnection(client, "wrong", 0);
+            } finally {
+                Assert.assertTrue(accepted.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void survivesThrowingConsumer() throws Exception {
+        try (final var listener =
+                SocksServer.getInstance()
+                        .listen(
+                                0,
+                                DESTINATION,
+                                socket -> {
+                                    throw new IllegalStateException();
+                                })) {
+            try (final Socket client = connect(listener.getPort())) {
+                SocksSocketFactory.createSocksConnection(client, DESTINATION, 0);
+                // the server closes the connection it could not hand over
+                Assert.assertEquals(-1, client.getInputStream().read());
+            }
+        }
+        handsOverConnections();
+    }
+
+    private static Socket connect(final int port) throws IOException {
+        final Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 5000);
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+}
@@ -83,4 +83,63 @@ public class StreamElementWriterTest {
                 """,
                 byteArrayOutputStream.toString());
     }
+
+    @Test
+    public void allEntitiesMessage() throws IOException {
+        final var byteArrayOutputStream = new ByteArrayOutputStream();
+        final var streamElementWriter = new StreamElementWriter(byteArrayOutputStream);
+        final var message = new Message(Message.Type.CHAT);
+        message.addExtension(new Body("<a href=\"x\">'R&D'</a>"));
+        streamElementWriter.write(message);
+        streamElementWriter.flush();
+        Assert.assertEquals(
+                """
+                <message type="chat"><body>&lt;a href=&quot;x&quot;&gt;&apos;R&amp;D&apos;&lt;/a&gt;</body></message>\
+                """,
+                byteArrayOutputStream.toString());
+    }
+
+    @Test
+    public void multiLineEmojiMessage() throws IOException {
+        final var byteArrayOutputStream = new ByteArrayOutputStream();
+        final var streamElementWriter = new StreamElementWriter(byteArrayOutputStream);
+        final var message = new Message(Message.Type.CHAT);
+        message.addExtension(new Body("Hello\n\t\uD83D\uDC08 & <3"));
+        streamElementWriter.write(message);
+        streamElementWriter.flush();
+        Assert.assertEquals(
+                "<message type=\"chat\"><body>Hello\n\t\uD83D\uDC08 &amp; &lt;3</body></message>",
+                byteArrayOutputStream.toString());
+    }
+
+    @Test
+    public void escapedAttribute() throws IOException {
+        final var byteArrayOutputStream = new ByteArrayOutputStream();
+        final var streamElementWriter = new StreamElementWriter(byteArrayOutputStream);
+        final var message = new Message();
+        message.setAttribute("id", "\"a'&b\"");
+        streamElementWriter.write(message);
+        streamElementWriter.flush();
+        Assert.assertEquals(
+                """
+                <message id="&quot;a&apos;&amp;b&quot;"/>\
+                """,
+                byteArrayOutputStream.toString());
+    }
+
+    @Test
+    public void nestedNamespaces() throws IOException {
+        final var byteArrayOutputStream = new ByteArrayOutputStream();
+        final var streamElementWriter = new StreamElementWriter(byteArrayOutputStream);
+        final var message = new Message(Message.Type.CHAT);
+        final var request = message.addExtension(new Request());
+        request.addChild("child").addChild("grandchild", "urn:example").setContent("x");
+        streamElementWriter.write(message);
+        streamElementWriter.flush();
+        Assert.assertEquals(
+                """
+                <message type="chat"><request xmlns="urn:xmpp:receipts"><child><grandchild xmlns="urn:example">x</grandchild></child></request></message>\
+                """,
+                byteArrayOutputStream.toString());
+    }
 }